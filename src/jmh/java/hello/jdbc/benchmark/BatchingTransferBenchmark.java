@@ -0,0 +1,88 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.BatchingTransferService;
+import hello.jdbc.service.MemberServiceV4;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 이체마다 커밋 vs 묶음 커밋(group commit) 처리량 / 지연시간
+ *
+ * maxBatchSize = 0 : MemberServiceV4 (이체마다 트랜잭션 하나)
+ * maxBatchSize > 0 : BatchingTransferService (maxBatchSize 건 또는 maxWaitMicros 마다 한 번 커밋)
+ *
+ * 처리량(thrpt)과 지연시간 분포(sample) 를 maxBatchSize 별로 비교하면 처리량/지연시간 곡선이 나온다.
+ */
+@State(Scope.Benchmark)
+@Threads(16)
+public class BatchingTransferBenchmark {
+
+    private static final int ACCOUNTS = 256;
+
+    @Param({"0", "8", "32", "128"})
+    int maxBatchSize;
+
+    @Param({"200"})
+    int maxWaitMicros;
+
+    DataSource dataSource;
+    TransactionTemplate txTemplate;
+    MemberServiceV4 perTransferService;
+    BatchingTransferService batchingService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSources.create(BenchmarkDataSources.HIKARI);
+
+        MemberRepositoryV5 repository = new MemberRepositoryV5(dataSource);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            repository.save(new Member(accountId(i), 1_000_000_000));
+        }
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        if (maxBatchSize == 0) {
+            // @Transactional 프록시 대신 TransactionTemplate 으로 같은 트랜잭션 경계를 만든다.
+            txTemplate = new TransactionTemplate(transactionManager);
+            perTransferService = new MemberServiceV4(repository);
+        } else {
+            batchingService = new BatchingTransferService(repository, transactionManager,
+                    maxBatchSize, Duration.ofNanos(maxWaitMicros * 1000L));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (batchingService != null) {
+            batchingService.close();
+        }
+        BenchmarkDataSources.close(dataSource);
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS - 1);
+        int to = from + 1 + random.nextInt(ACCOUNTS - from - 1);
+
+        // 데드락이 나지 않도록 항상 작은 번호 -> 큰 번호 순서로 이체
+        String fromId = accountId(from);
+        String toId = accountId(to);
+
+        if (batchingService != null) {
+            batchingService.accountTransfer(fromId, toId, 1).join(); // 커밋될 때까지 기다린다.
+        } else {
+            txTemplate.executeWithoutResult(status -> perTransferService.accountTransfer(fromId, toId, 1));
+        }
+    }
+
+    private static String accountId(int i) {
+        return String.format("a%03d", i);
+    }
+}
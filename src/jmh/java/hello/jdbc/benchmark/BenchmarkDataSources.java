@@ -0,0 +1,62 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * 벤치마크용 임베디드 H2 (메모리 DB) 데이터소스
+ *
+ * 외부 H2 서버 없이 JVM 안에서 바로 member 테이블을 만들어 사용한다.
+ * DB_CLOSE_DELAY=-1 -> 마지막 커넥션이 닫혀도 메모리 DB 를 유지 (DriverManager 방식은 매번 커넥션을 닫기 때문)
+ */
+public abstract class BenchmarkDataSources {
+
+    public static final String URL = "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    public static final String DRIVER_MANAGER = "driverManager";
+    public static final String HIKARI = "hikari";
+
+    public static DataSource create(String type) {
+        DataSource dataSource;
+
+        if (DRIVER_MANAGER.equals(type)) {
+            // 항상 새로운 커넥션을 획득
+            dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        } else if (HIKARI.equals(type)) {
+            // 커넥션 풀링
+            HikariDataSource hikari = new HikariDataSource();
+            hikari.setJdbcUrl(URL);
+            hikari.setUsername(USERNAME);
+            hikari.setPassword(PASSWORD);
+            hikari.setMaximumPoolSize(10);
+            hikari.setPoolName("BenchmarkPool");
+            dataSource = hikari;
+        } else {
+            throw new IllegalArgumentException("unknown dataSource type = " + type);
+        }
+
+        createSchema(dataSource);
+        return dataSource;
+    }
+
+    public static void createSchema(DataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table if not exists member (" +
+                "member_id varchar(10), " +
+                "money integer not null default 0, " +
+                "version bigint not null default 0, " +
+                "primary key (member_id))");
+        template.execute("delete from member");
+    }
+
+    public static void close(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.ex.MyDbException;
+import hello.jdbc.repository.ex.MyDuplicateKeyException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 키 중복 -> 새 id 로 재시도 (ExTranslatorV1Test.Service.create 와 같은 흐름)
+ *
+ * id 공간의 대부분이 이미 차 있어서 대부분의 시도가 키 중복으로 실패한다.
+ * stackless = false : new MyDuplicateKeyException(e) - 스택 트레이스를 채움
+ * stackless = true  : MyDuplicateKeyException.stackless(e)
+ *
+ * create : 저장 성공할 때까지 재시도 (DB 호출 포함)
+ * createIfAbsent : 예외 대신 MemberRepositoryV5.saveIfAbsent 의 결과로 재시도 (stackless 와 무관)
+ * throwOnly : DB 없이 예외를 만들어 던지고 잡는 비용만
+ */
+@State(Scope.Benchmark)
+public class DuplicateKeyRetryBenchmark {
+
+    private static final int ID_SPACE = 10_000;
+    private static final int FILLED = 9_500; // 95% 충돌
+
+    @Param({"false", "true"})
+    boolean stackless;
+
+    DataSource dataSource;
+    JdbcTemplate template;
+    MemberRepository repository;
+
+    SQLException duplicateKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSources.create(BenchmarkDataSources.HIKARI);
+        template = new JdbcTemplate(dataSource);
+        repository = new MemberRepositoryV5(dataSource);
+        duplicateKey = new SQLException("Unique index or primary key violation", "23505", 23505);
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        template.execute("delete from member");
+        template.update("insert into member(member_id, money) select 'k' || x, 0 from system_range(0, ?)", FILLED - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDataSources.close(dataSource);
+    }
+
+    @Benchmark
+    public String create() {
+        while (true) {
+            String memberId = "k" + ThreadLocalRandom.current().nextInt(ID_SPACE);
+            try {
+                save(memberId);
+                template.update("delete from member where member_id = ?", memberId); // 충돌 비율 유지
+                return memberId;
+            } catch (MyDuplicateKeyException e) {
+                // 키 중복, 다른 id 로 재시도
+            }
+        }
+    }
+
+    @Benchmark
+    public String createIfAbsent() {
+        while (true) {
+            String memberId = "k" + ThreadLocalRandom.current().nextInt(ID_SPACE);
+            if (repository.saveIfAbsent(new Member(memberId, 0))) {
+                template.update("delete from member where member_id = ?", memberId); // 충돌 비율 유지
+                return memberId;
+            }
+        }
+    }
+
+    @Benchmark
+    public MyDbException throwOnly() {
+        try {
+            throw translate(duplicateKey);
+        } catch (MyDuplicateKeyException e) {
+            return e;
+        }
+    }
+
+    private void save(String memberId) {
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        try {
+            con = dataSource.getConnection();
+            pstmt = con.prepareStatement("insert into member(member_id, money) values(?, ?)");
+            pstmt.setString(1, memberId);
+            pstmt.setInt(2, 0);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw translate(e);
+        } finally {
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(con);
+        }
+    }
+
+    private MyDbException translate(SQLException e) {
+        if (e.getErrorCode() == 23505) {
+            return stackless ? MyDuplicateKeyException.stackless(e) : new MyDuplicateKeyException(e);
+        }
+        return new MyDbException(e);
+    }
+}
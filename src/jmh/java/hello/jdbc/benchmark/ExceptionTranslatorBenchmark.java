@@ -0,0 +1,68 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.ErrorCodeTranslator;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * 키 중복 예외가 쏟아질 때 예외 변환 비용 - 스프링 SQLErrorCodeSQLExceptionTranslator vs ErrorCodeTranslator
+ *
+ * translate : 변환만 (같은 SQLException 을 계속 변환)
+ * duplicateSave : MemberRepositoryV4_2 로 이미 있는 회원을 계속 저장 (실제 DB 호출 + 변환)
+ */
+@State(Scope.Benchmark)
+public class ExceptionTranslatorBenchmark {
+
+    private static final String SQL = "insert into member(member_id, money) values (?, ?)";
+    private static final Member DUPLICATE = new Member("dup", 10000);
+
+    @Param({"spring", "errorCode"})
+    String translator;
+
+    DataSource dataSource;
+    SQLExceptionTranslator exTranslator;
+    MemberRepository repository;
+
+    SQLException duplicateKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSources.create(BenchmarkDataSources.HIKARI);
+        exTranslator = "spring".equals(translator)
+                ? new SQLErrorCodeSQLExceptionTranslator(dataSource)
+                : ErrorCodeTranslator.h2();
+        repository = new MemberRepositoryV4_2(dataSource, exTranslator);
+        repository.save(DUPLICATE);
+
+        duplicateKey = new SQLException("Unique index or primary key violation", "23505", 23505);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDataSources.close(dataSource);
+    }
+
+    @Benchmark
+    public DataAccessException translate() {
+        return exTranslator.translate("save", SQL, duplicateKey);
+    }
+
+    @Benchmark
+    public DataAccessException duplicateSave() {
+        try {
+            repository.save(DUPLICATE);
+            throw new IllegalStateException("expected duplicate key");
+        } catch (DuplicateKeyException e) {
+            return e;
+        }
+    }
+}
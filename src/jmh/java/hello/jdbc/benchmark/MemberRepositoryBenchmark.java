@@ -0,0 +1,174 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 리포지토리 세대별 save / findById / update / delete 성능 측정
+ *
+ * generation : MemberRepositoryV1 ~ V5
+ * dataSourceType : DriverManager(매번 새 커넥션) vs Hikari(커넥션 풀)
+ *
+ * V0 는 DBConnectionUtil 로 외부 H2 서버에 직접 붙기 때문에 MemberRepositoryV0Benchmark 에서 따로 측정한다.
+ */
+@State(Scope.Benchmark)
+public class MemberRepositoryBenchmark {
+
+    // 조회/수정 대상으로 미리 넣어두는 회원 수
+    private static final int SEED_SIZE = 1000;
+
+    @Param({"V1", "V2", "V3", "V4_1", "V4_2", "V5"})
+    String generation;
+
+    @Param({BenchmarkDataSources.DRIVER_MANAGER, BenchmarkDataSources.HIKARI})
+    String dataSourceType;
+
+    DataSource dataSource;
+    MemberOps repository;
+
+    // save 벤치마크에서 새 회원 id 를 만들기 위한 시퀀스 (member_id 가 varchar(10) 이라 짧게 만든다)
+    final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        dataSource = BenchmarkDataSources.create(dataSourceType);
+        repository = MemberOps.of(generation, dataSource);
+
+        for (int i = 0; i < SEED_SIZE; i++) {
+            repository.save(new Member(seedId(i), 10000));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUpSaved() {
+        // save 벤치마크로 쌓인 회원을 지워 반복(iteration)마다 테이블 크기를 일정하게 유지
+        new JdbcTemplate(dataSource).update("delete from member where member_id like 'n%'");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDataSources.close(dataSource);
+    }
+
+    @Benchmark
+    public Member save() throws SQLException {
+        Member member = new Member("n" + sequence.incrementAndGet(), 10000);
+        repository.save(member);
+        return member;
+    }
+
+    @Benchmark
+    public Member findById() throws SQLException {
+        return repository.findById(randomSeedId());
+    }
+
+    @Benchmark
+    public void update() throws SQLException {
+        repository.update(randomSeedId(), ThreadLocalRandom.current().nextInt(100000));
+    }
+
+    @Benchmark
+    public void delete(DeleteTarget target) throws SQLException {
+        repository.delete(target.memberId);
+    }
+
+    /**
+     * delete 할 회원을 매 호출 직전에 넣어둔다. (넣는 시간은 측정에서 빠진다)
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+
+        String memberId;
+
+        @Setup(Level.Invocation)
+        public void insert(MemberRepositoryBenchmark benchmark) {
+            memberId = "d" + benchmark.sequence.incrementAndGet();
+            new JdbcTemplate(benchmark.dataSource)
+                    .update("insert into member(member_id, money) values (?, ?)", memberId, 10000);
+        }
+    }
+
+    private static String seedId(int i) {
+        return "m" + i;
+    }
+
+    private static String randomSeedId() {
+        return seedId(ThreadLocalRandom.current().nextInt(SEED_SIZE));
+    }
+
+    /**
+     * 세대마다 시그니처(throws SQLException 유무, 인터페이스 구현 여부)가 달라서 벤치마크용으로 맞춰주는 어댑터
+     */
+    interface MemberOps {
+
+        void save(Member member) throws SQLException;
+
+        Member findById(String memberId) throws SQLException;
+
+        void update(String memberId, int money) throws SQLException;
+
+        void delete(String memberId) throws SQLException;
+
+        static MemberOps of(String generation, DataSource dataSource) {
+            switch (generation) {
+                case "V1":
+                    return of(new MemberRepositoryV1(dataSource));
+                case "V2":
+                    return of(new MemberRepositoryV2(dataSource));
+                case "V3":
+                    return of(new MemberRepositoryV3(dataSource));
+                case "V4_1":
+                    return of(new MemberRepositoryV4_1(dataSource));
+                case "V4_2":
+                    return of(new MemberRepositoryV4_2(dataSource));
+                case "V5":
+                    return of(new MemberRepositoryV5(dataSource));
+                default:
+                    throw new IllegalArgumentException("unknown generation = " + generation);
+            }
+        }
+
+        static MemberOps of(MemberRepositoryV1 repository) {
+            return new MemberOps() {
+                public void save(Member member) throws SQLException { repository.save(member); }
+                public Member findById(String memberId) throws SQLException { return repository.findById(memberId); }
+                public void update(String memberId, int money) throws SQLException { repository.update(memberId, money); }
+                public void delete(String memberId) throws SQLException { repository.delete(memberId); }
+            };
+        }
+
+        static MemberOps of(MemberRepositoryV2 repository) {
+            return new MemberOps() {
+                public void save(Member member) throws SQLException { repository.save(member); }
+                public Member findById(String memberId) throws SQLException { return repository.findById(memberId); }
+                public void update(String memberId, int money) throws SQLException { repository.update(memberId, money); }
+                public void delete(String memberId) throws SQLException { repository.delete(memberId); }
+            };
+        }
+
+        static MemberOps of(MemberRepositoryV3 repository) {
+            return new MemberOps() {
+                public void save(Member member) throws SQLException { repository.save(member); }
+                public Member findById(String memberId) throws SQLException { return repository.findById(memberId); }
+                public void update(String memberId, int money) throws SQLException { repository.update(memberId, money); }
+                public void delete(String memberId) throws SQLException { repository.delete(memberId); }
+            };
+        }
+
+        static MemberOps of(MemberRepository repository) {
+            return new MemberOps() {
+                public void save(Member member) { repository.save(member); }
+                public Member findById(String memberId) { return repository.findById(memberId); }
+                public void update(String memberId, int money) { repository.update(memberId, money); }
+                public void delete(String memberId) { repository.delete(memberId); }
+            };
+        }
+    }
+}
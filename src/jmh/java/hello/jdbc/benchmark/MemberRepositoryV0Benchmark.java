@@ -0,0 +1,79 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.connection.DBConnectionUtil;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV0;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MemberRepositoryV0 성능 측정
+ *
+ * V0 는 DBConnectionUtil 로 ConnectionConst.URL 에 직접 붙는다. (BenchmarkDataSources 를 쓰지 않는다)
+ * 기본(jdbc.db=tcp)은 외부 H2 서버(jdbc:h2:tcp://localhost/~/jdbc)가 떠 있어야 하고,
+ * ./gradlew jmh -Pjdbc.db=mem 이면 외부 서버 없이 메모리 DB 에서 실행한다. (URL 의 INIT 이 member 테이블을 만든다)
+ *
+ * pooled = false : 호출마다 DriverManager 로 새 커넥션 (TCP 연결 + 로그인)
+ * pooled = true  : DBConnectionUtil 풀 모드, 풀에서 꺼내고 close() 로 반납
+ */
+@State(Scope.Benchmark)
+public class MemberRepositoryV0Benchmark {
+
+    private static final int SEED_SIZE = 100;
+
+    @Param({"false", "true"})
+    boolean pooled;
+
+    MemberRepositoryV0 repository = new MemberRepositoryV0();
+
+    final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        DBConnectionUtil.setPooled(pooled);
+
+        for (int i = 0; i < SEED_SIZE; i++) {
+            repository.delete(seedId(i));
+            repository.save(new Member(seedId(i), 10000));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        for (int i = 0; i < SEED_SIZE; i++) {
+            repository.delete(seedId(i));
+        }
+
+        DBConnectionUtil.setPooled(false);
+        DBConnectionUtil.closePool();
+    }
+
+    @Benchmark
+    public Member saveAndDelete() throws SQLException {
+        Member member = new Member("v0n" + sequence.incrementAndGet(), 10000);
+        repository.save(member);
+        repository.delete(member.getMemberId());
+        return member;
+    }
+
+    @Benchmark
+    public Member findById() throws SQLException {
+        return repository.findById(randomSeedId());
+    }
+
+    @Benchmark
+    public void update() throws SQLException {
+        repository.update(randomSeedId(), ThreadLocalRandom.current().nextInt(100000));
+    }
+
+    private static String seedId(int i) {
+        return "v0m" + i;
+    }
+
+    private static String randomSeedId() {
+        return seedId(ThreadLocalRandom.current().nextInt(SEED_SIZE));
+    }
+}
@@ -0,0 +1,88 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.OptimisticTransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 비관적 락 vs 낙관적 락 - 충돌 정도(계좌 수)를 바꿔가며 비교
+ *
+ * 8 쓰레드가 accounts 개 계좌 중 무작위 두 계좌 사이에서 양방향으로 이체한다. 계좌가 적을수록 충돌이 잦다.
+ * pessimistic : MemberServiceV4.accountTransferLockOrdered (select ... for update 로 memberId 순서대로 행 락 -> withdraw, addMoney)
+ * optimistic : OptimisticTransferService (버전과 함께 조회 -> 버전 조건 update, 충돌하면 백오프 후 재시도)
+ *              점수가 완료된 이체 수가 되도록 시도 횟수는 넉넉히 준다. (기본 10 번이면 계좌 2 개에서는 포기하는 이체가 생긴다)
+ *
+ * 낙관적 락의 재시도 비율은 trial 이 끝날 때 출력한다.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class OptimisticTransferBenchmark {
+
+    private static final int MAX_ATTEMPTS = 1000;
+
+    @Param({"2", "8", "64", "1024"})
+    int accounts;
+
+    @Param({"pessimistic", "optimistic"})
+    String mode;
+
+    DataSource dataSource;
+    TransactionTemplate txTemplate;
+    MemberServiceV4 pessimisticService;
+    OptimisticTransferService optimisticService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSources.create(BenchmarkDataSources.HIKARI);
+
+        MemberRepositoryV5 repository = new MemberRepositoryV5(dataSource);
+        for (int i = 0; i < accounts; i++) {
+            repository.save(new Member(accountId(i), 1_000_000));
+        }
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        txTemplate = new TransactionTemplate(transactionManager);
+        pessimisticService = new MemberServiceV4(repository);
+        optimisticService = new OptimisticTransferService(transactionManager, repository, MAX_ATTEMPTS,
+                OptimisticTransferService.DEFAULT_BASE_BACKOFF, OptimisticTransferService.DEFAULT_MAX_BACKOFF);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if ("optimistic".equals(mode)) {
+            System.out.printf("%n[accounts=%d] optimistic retries=%d, gave up=%d%n",
+                    accounts, optimisticService.getRetryCount(), optimisticService.getGiveUpCount());
+        }
+        BenchmarkDataSources.close(dataSource);
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts);
+        int to = random.nextInt(accounts - 1);
+        if (to >= from) {
+            to++; // from 과 다른 계좌
+        }
+
+        String fromId = accountId(from);
+        String toId = accountId(to);
+
+        if ("optimistic".equals(mode)) {
+            optimisticService.accountTransfer(fromId, toId, 1);
+        } else {
+            txTemplate.executeWithoutResult(status -> pessimisticService.accountTransferLockOrdered(fromId, toId, 1));
+        }
+    }
+
+    private static String accountId(int i) {
+        return String.format("a%04d", i);
+    }
+}
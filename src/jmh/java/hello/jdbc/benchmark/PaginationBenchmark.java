@@ -0,0 +1,73 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 페이지 깊이에 따른 조회 비용 - keyset(findPage) vs offset
+ *
+ * keyset 은 깊이와 관계없이 일정하고, offset 은 앞의 행을 모두 건너뛰어야 해서 깊이에 비례해 느려진다.
+ * 기본 행 수는 100만, 1000만 행은 힙을 늘려서 실행한다.
+ * ex) ./gradlew jmh -Pjmh.includes=PaginationBenchmark (rows=10000000, jvmArgs -Xmx4g)
+ */
+@State(Scope.Benchmark)
+public class PaginationBenchmark {
+
+    private static final int LIMIT = 20;
+
+    @Param({"1000000"})
+    int rows;
+
+    // 전체 중 몇 번째 위치의 페이지를 조회할지 (0 = 첫 페이지)
+    @Param({"0", "0.5", "0.99"})
+    double depth;
+
+    DataSource dataSource;
+    MemberRepository repository;
+    JdbcTemplate template;
+
+    String afterMemberId;
+    int offset;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSources.create(BenchmarkDataSources.HIKARI);
+        repository = new MemberRepositoryV5(dataSource);
+        template = new JdbcTemplate(dataSource);
+
+        // p0000000 ~ : 정렬 순서 = 번호 순서
+        template.update("insert into member(member_id, money) " +
+                "select 'p' || lpad(x, 7, '0'), 10000 from system_range(0, ?)", rows - 1);
+
+        offset = (int) (rows * depth);
+        afterMemberId = offset == 0 ? null : memberId(offset - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        template.execute("delete from member");
+        BenchmarkDataSources.close(dataSource);
+    }
+
+    @Benchmark
+    public List<Member> keyset() {
+        return repository.findPage(afterMemberId, LIMIT);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> offset() {
+        return template.queryForList("select member_id, money from member order by member_id limit ? offset ?",
+                LIMIT, offset);
+    }
+
+    private static String memberId(int i) {
+        return String.format("p%07d", i);
+    }
+}
@@ -0,0 +1,72 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.MemberRowMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+
+/**
+ * 조회 결과 매핑 방식별 비용 - 할당량은 -prof gc 의 gc.alloc.rate.norm (B/op) 으로 확인한다.
+ *
+ * byName  : 예전 memberRowMapper() - select *, rs.getString("member_id") 이름으로 조회, 행마다 new Member
+ * byIndex : MemberRowMapper.INSTANCE - 컬럼을 적은 select, 순서로 조회, 행마다 new Member
+ * shared  : MemberRepositoryV5.streamAllShared - Member 하나를 재사용
+ */
+@State(Scope.Benchmark)
+public class RowMapperBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    DataSource dataSource;
+    JdbcTemplate template;
+    MemberRepositoryV5 repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSources.create(BenchmarkDataSources.HIKARI);
+        template = new JdbcTemplate(dataSource);
+        repository = new MemberRepositoryV5(dataSource);
+
+        template.update("insert into member(member_id, money) " +
+                "select 'r' || x, 10000 from system_range(0, ?)", ROWS - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        template.execute("delete from member");
+        BenchmarkDataSources.close(dataSource);
+    }
+
+    @Benchmark
+    public void byName(Blackhole bh) {
+        RowMapper<Member> rowMapper = (rs, rowNum) -> {
+            Member member = new Member();
+            member.setMemberId(rs.getString("member_id"));
+            member.setMoney(rs.getInt("money"));
+            return member;
+        };
+        template.query("select * from member", (RowCallbackHandler) rs -> bh.consume(rowMapper.mapRow(rs, 0)));
+    }
+
+    @Benchmark
+    public void byIndex(Blackhole bh) {
+        template.query("select " + MemberRowMapper.COLUMNS + " from member",
+                (RowCallbackHandler) rs -> bh.consume(MemberRowMapper.INSTANCE.mapRow(rs, 0)));
+    }
+
+    @Benchmark
+    public void streamAll(Blackhole bh) {
+        repository.streamAll(bh::consume, 1000);
+    }
+
+    @Benchmark
+    public void streamAllShared(Blackhole bh) {
+        repository.streamAllShared(member -> bh.consume(member.getMoney()), 1000);
+    }
+}
@@ -0,0 +1,59 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.connection.StatementCachingDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * PreparedStatement 캐시 유무에 따른 호출당 비용 (Hikari 커넥션 풀 + MemberRepositoryV4_2)
+ */
+@State(Scope.Benchmark)
+public class StatementCacheBenchmark {
+
+    private static final int SEED_SIZE = 1000;
+
+    @Param({"false", "true"})
+    boolean statementCache;
+
+    DataSource pool;
+    MemberRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = BenchmarkDataSources.create(BenchmarkDataSources.HIKARI);
+        DataSource dataSource = statementCache ? new StatementCachingDataSource(pool, 32) : pool;
+        repository = new MemberRepositoryV4_2(dataSource);
+
+        for (int i = 0; i < SEED_SIZE; i++) {
+            repository.save(new Member(seedId(i), 10000));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDataSources.close(pool);
+    }
+
+    @Benchmark
+    public Member findById() {
+        return repository.findById(randomSeedId());
+    }
+
+    @Benchmark
+    public void update() {
+        repository.update(randomSeedId(), ThreadLocalRandom.current().nextInt(100000));
+    }
+
+    private static String seedId(int i) {
+        return "m" + i;
+    }
+
+    private static String randomSeedId() {
+        return seedId(ThreadLocalRandom.current().nextInt(SEED_SIZE));
+    }
+}
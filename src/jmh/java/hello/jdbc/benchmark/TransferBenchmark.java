@@ -0,0 +1,98 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.AuditingMemberRepository;
+import hello.jdbc.repository.LedgerMemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.MoneyAuditor;
+import hello.jdbc.service.LedgerTransferService;
+import hello.jdbc.service.MemberServiceV4;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 소수의 인기(hot) 계좌에 이체가 몰릴 때 처리량 비교
+ *
+ * db : MemberServiceV4 (트랜잭션마다 withdraw + addMoney, DB 행 락)
+ * audited : db + MoneyAuditor (쓰기 경로 기록 + 1초마다 sum 검사) - db 와의 차이가 감시 비용
+ * ledger : LedgerTransferService (메모리 원장, DB 는 비동기 반영)
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class TransferBenchmark {
+
+    @Param({"4", "64"})
+    int accounts;
+
+    @Param({"db", "audited", "ledger"})
+    String mode;
+
+    DataSource dataSource;
+    TransactionTemplate txTemplate;
+    MemberServiceV4 dbService;
+    MoneyAuditor auditor;
+    LedgerMemberRepository ledger;
+    LedgerTransferService ledgerService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSources.create(BenchmarkDataSources.HIKARI);
+
+        MemberRepositoryV5 repository = new MemberRepositoryV5(dataSource);
+        for (int i = 0; i < accounts; i++) {
+            repository.save(new Member(accountId(i), 1_000_000));
+        }
+
+        // @Transactional 프록시 대신 TransactionTemplate 으로 같은 트랜잭션 경계를 만든다.
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        dbService = new MemberServiceV4(repository);
+
+        if ("audited".equals(mode)) {
+            auditor = new MoneyAuditor(repository);
+            auditor.startChecking(Duration.ofSeconds(1));
+            dbService = new MemberServiceV4(new AuditingMemberRepository(repository, auditor));
+        }
+
+        if ("ledger".equals(mode)) {
+            ledger = new LedgerMemberRepository(dataSource, Duration.ofMillis(100));
+            ledgerService = new LedgerTransferService(ledger);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (auditor != null) {
+            auditor.close();
+        }
+        if (ledger != null) {
+            ledger.close();
+        }
+        BenchmarkDataSources.close(dataSource);
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts - 1);
+        int to = from + 1 + random.nextInt(accounts - from - 1);
+
+        // DB 모드에서 데드락이 나지 않도록 항상 작은 번호 -> 큰 번호 순서로 이체
+        String fromId = accountId(from);
+        String toId = accountId(to);
+
+        if (ledgerService != null) {
+            ledgerService.accountTransfer(fromId, toId, 1);
+        } else {
+            txTemplate.executeWithoutResult(status -> dbService.accountTransfer(fromId, toId, 1));
+        }
+    }
+
+    private static String accountId(int i) {
+        return String.format("a%03d", i);
+    }
+}
@@ -0,0 +1,453 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.connection.MeasuringDataSource;
+import hello.jdbc.repository.*;
+import hello.jdbc.service.*;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 계좌이체 부하 생성기 - 같은 부하로 트랜잭션 방식과 커넥션 풀 크기를 비교한다.
+ *
+ * 실행 : ./gradlew loadTest -Pargs="strategy=all pool=4,10,20 threads=32 duration=30"
+ *
+ * 옵션 (key=value, 쉼표로 여러 값을 주면 모든 조합을 차례로 실행)
+ * - strategy : v2 (커넥션 파라미터), v3_1 (트랜잭션 매니저), v3_2 (트랜잭션 템플릿), v3_3 (@Transactional),
+ *              v4 (MemberServiceV4), v4_ordered (락 순서 고정), optimistic (OptimisticTransferService, 버전 충돌 시 재시도),
+ *              all - 기본 v4
+ * - pool : 히카리 최대 커넥션 수 - 기본 10
+ * - accounts : 계좌 수 - 기본 1000
+ * - skew : 지프(Zipf) 지수 - 0 이면 균등, 클수록 앞쪽 계좌에 이체가 몰린다. 기본 1.0
+ * - threads, duration(초), warmup(초), amount(이체 금액), balance(계좌별 시작 잔액), seed
+ * - url, username, password - 기본은 JVM 안의 메모리 DB (BenchmarkDataSources.URL)
+ * - audit : MoneyAuditor 검사 주기(ms), 0 이면 끔 - 기본 0. audit=0,1000 처럼 주면 감시 비용을 같은 부하로 비교한다.
+ *           v2 는 트랜잭션 동기화를 쓰지 않으므로 감시하지 않는다.
+ *
+ * 결과 : 초당 이체 수, 이체 지연시간 백분위, 롤백 비율과 원인, 커넥션 획득 대기 시간, 전체 금액 보존 여부 (감시 중이면 drift 와 의심 이체)
+ * 같은 seed 면 쓰레드마다 같은 순서로 계좌를 고른다. (방식끼리 같은 부하)
+ *
+ * 다른 데이터를 건드리지 않도록 "load" 로 시작하는 id 의 계좌만 만들고 지운다.
+ */
+public class TransferLoadGenerator {
+
+    static final String ID_PREFIX = "load";
+    static final List<String> ALL_STRATEGIES = List.of("v2", "v3_1", "v3_2", "v3_3", "v4", "v4_ordered", "optimistic");
+
+    interface Transfer {
+        void transfer(String fromId, String toId, int money) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        System.out.println(options);
+
+        List<Result> results = new ArrayList<>();
+        for (int pool : options.pools) {
+            for (String strategy : options.strategies) {
+                for (long auditMillis : options.audits) {
+                    Result result = run(options, strategy, pool, auditMillis);
+                    System.out.println(result.detail());
+                    results.add(result);
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println(Result.HEADER);
+        results.forEach(result -> System.out.println(result.row()));
+    }
+
+    static Result run(Options options, String strategy, int poolSize, long auditMillis) throws InterruptedException {
+        HikariDataSource hikari = new HikariDataSource();
+        hikari.setJdbcUrl(options.url);
+        hikari.setUsername(options.username);
+        hikari.setPassword(options.password);
+        hikari.setMaximumPoolSize(poolSize);
+        hikari.setPoolName("LoadPool");
+
+        MoneyAuditor auditor = null;
+        try (MeasuringDataSource dataSource = new MeasuringDataSource(hikari)) {
+            resetAccounts(dataSource, options);
+            if (auditMillis > 0 && !strategy.equals("v2")) {
+                auditor = new MoneyAuditor(new MemberRepositoryV5(dataSource));
+                auditor.check(); // 기준 잡기
+                auditor.startChecking(Duration.ofMillis(auditMillis));
+            }
+            Transfer transfer = transferOf(strategy, dataSource, auditor);
+
+            ZipfSampler sampler = new ZipfSampler(options.accounts, options.skew);
+            Result result = new Result(auditor != null ? strategy + "+audit" : strategy, poolSize);
+            Worker[] workers = new Worker[options.threads];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Worker(transfer, sampler, new SplittableRandom(options.seed + i), options.amount, result);
+                workers[i].setName("load-" + i);
+                workers[i].start();
+            }
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds));
+            result.measuring = true;
+            long start = System.nanoTime();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+            result.measuring = false;
+            result.elapsedNanos = System.nanoTime() - start;
+
+            for (Worker worker : workers) {
+                worker.running = false;
+            }
+            for (Worker worker : workers) {
+                worker.join();
+            }
+
+            result.acquireLatency = dataSource.getAcquireLatency();
+            checkConservation(dataSource, options, result);
+            if (auditor != null) {
+                auditor.close();
+                auditor.check(); // 마지막 검사 주기 이후 커밋된 이체까지
+                result.auditor = auditor;
+            }
+            return result;
+        } finally {
+            if (auditor != null) {
+                auditor.close();
+            }
+            hikari.close();
+        }
+    }
+
+    /**
+     * @param auditor null 이면 감시하지 않는다.
+     */
+    static Transfer transferOf(String strategy, DataSource dataSource, MoneyAuditor auditor) {
+        PlatformTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        switch (strategy) {
+            case "v2":
+                return new MemberServiceV2(dataSource, new MemberRepositoryV2(dataSource))::accountTransfer;
+            case "v3_1":
+                return new MemberServiceV3_1(transactionManager, v3Repository(dataSource, auditor))::accountTransfer;
+            case "v3_2":
+                return new MemberServiceV3_2(transactionManager, v3Repository(dataSource, auditor))::accountTransfer;
+            case "v3_3":
+                return transactional(new MemberServiceV3_3(v3Repository(dataSource, auditor)), transactionManager)::accountTransfer;
+            case "v4":
+                return transactional(new MemberServiceV4(v5Repository(dataSource, auditor)), transactionManager)::accountTransfer;
+            case "v4_ordered":
+                return transactional(new MemberServiceV4(v5Repository(dataSource, auditor)), transactionManager)::accountTransferLockOrdered;
+            case "optimistic":
+                return new OptimisticTransferService(transactionManager, v5Repository(dataSource, auditor))::accountTransfer;
+            default:
+                throw new IllegalArgumentException("unknown strategy = " + strategy + " " + ALL_STRATEGIES);
+        }
+    }
+
+    static MemberRepositoryV3 v3Repository(DataSource dataSource, MoneyAuditor auditor) {
+        return auditor == null ? new MemberRepositoryV3(dataSource) : new AuditingMemberRepositoryV3(dataSource, auditor);
+    }
+
+    static MemberRepository v5Repository(DataSource dataSource, MoneyAuditor auditor) {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        return auditor == null ? repository : new AuditingMemberRepository(repository, auditor);
+    }
+
+    /**
+     * 스프링 컨테이너 없이 @Transactional 프록시를 만든다. (스프링이 빈에 적용하는 것과 같은 인터셉터)
+     * PlatformTransactionManager 타입으로 넘기면 deprecated 생성자가 선택되므로 TransactionManager 로 받는다.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T transactional(T target, TransactionManager transactionManager) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        return (T) factory.getProxy();
+    }
+
+    static void resetAccounts(DataSource dataSource, Options options) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table if not exists member (" +
+                "member_id varchar(10), " +
+                "money integer not null default 0, " +
+                "version bigint not null default 0, " +
+                "primary key (member_id))");
+        template.execute("alter table member add column if not exists version bigint not null default 0"); // url 로 준 예전 DB
+        template.update("delete from member where member_id like ?", ID_PREFIX + "%");
+
+        List<Object[]> rows = new ArrayList<>(options.accounts);
+        for (int i = 0; i < options.accounts; i++) {
+            rows.add(new Object[]{accountId(i), options.balance});
+        }
+        template.batchUpdate("insert into member(member_id, money) values (?, ?)", rows);
+    }
+
+    static void checkConservation(DataSource dataSource, Options options, Result result) {
+        Map<String, Object> row = new JdbcTemplate(dataSource).queryForMap(
+                "select count(*) as cnt, coalesce(sum(money), 0) as total from member where member_id like ?",
+                ID_PREFIX + "%");
+        result.accountCount = ((Number) row.get("cnt")).longValue();
+        result.expectedTotal = (long) options.accounts * options.balance;
+        result.actualTotal = ((Number) row.get("total")).longValue();
+    }
+
+    static String accountId(int i) {
+        return ID_PREFIX + i; // member_id varchar(10) -> 계좌 100만 개까지
+    }
+
+    static class Worker extends Thread {
+
+        private final Transfer transfer;
+        private final ZipfSampler sampler;
+        private final SplittableRandom random;
+        private final int amount;
+        private final Result result;
+        volatile boolean running = true;
+
+        Worker(Transfer transfer, ZipfSampler sampler, SplittableRandom random, int amount, Result result) {
+            this.transfer = transfer;
+            this.sampler = sampler;
+            this.random = random;
+            this.amount = amount;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                int from = sampler.next(random);
+                int to = sampler.next(random);
+                if (from == to) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    transfer.transfer(accountId(from), accountId(to), amount);
+                    if (result.measuring) {
+                        result.latency.record(System.nanoTime() - start);
+                        result.committed.increment();
+                    }
+                } catch (Exception e) {
+                    if (result.measuring) {
+                        result.rollback(e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 지프 분포 - k 번째 계좌가 뽑힐 확률이 1 / k^skew 에 비례한다.
+     * 누적 확률을 미리 계산해 두고 이진 탐색으로 뽑는다.
+     */
+    static class ZipfSampler {
+
+        private final double[] cumulative;
+
+        ZipfSampler(int n, double skew) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1.0 / Math.pow(k + 1, skew);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int next(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            index = index >= 0 ? index : -index - 1;
+            return Math.min(index, cumulative.length - 1);
+        }
+    }
+
+    static class Result {
+
+        static final String HEADER = String.format("%-16s %5s %10s %9s %9s %9s %9s %10s %11s %9s",
+                "strategy", "pool", "tps", "p50(us)", "p99(us)", "p999(us)", "max(us)", "rollback%", "acqP99(us)", "conserved");
+
+        final String strategy;
+        final int poolSize;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder committed = new LongAdder();
+        final Map<String, LongAdder> rollbackCauses = new ConcurrentHashMap<>();
+        volatile boolean measuring;
+        long elapsedNanos;
+        LatencyHistogram acquireLatency;
+        long accountCount;
+        long expectedTotal;
+        long actualTotal;
+        MoneyAuditor auditor; // 감시하지 않았으면 null
+
+        Result(String strategy, int poolSize) {
+            this.strategy = strategy;
+            this.poolSize = poolSize;
+        }
+
+        void rollback(Exception e) {
+            rollbackCauses.computeIfAbsent(causeOf(e), key -> new LongAdder()).increment();
+        }
+
+        /**
+         * 서비스가 감싼 예외(IllegalStateException 등)를 벗겨서 스프링 예외 또는 SQLException 의 이름을 쓴다.
+         */
+        static String causeOf(Throwable e) {
+            Throwable cause = e;
+            while (!(cause instanceof DataAccessException) && !(cause instanceof SQLException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause.getClass().getSimpleName();
+        }
+
+        long rollbacks() {
+            return rollbackCauses.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        double rollbackRate() {
+            long total = committed.sum() + rollbacks();
+            return total == 0 ? 0 : rollbacks() * 100.0 / total;
+        }
+
+        double tps() {
+            return committed.sum() * 1e9 / elapsedNanos;
+        }
+
+        boolean conserved() {
+            return actualTotal == expectedTotal;
+        }
+
+        String row() {
+            return String.format("%-16s %5d %10.1f %9d %9d %9d %9d %9.2f%% %11d %9s",
+                    strategy, poolSize, tps(),
+                    latency.getValueAtPercentile(50, TimeUnit.MICROSECONDS),
+                    latency.getValueAtPercentile(99, TimeUnit.MICROSECONDS),
+                    latency.getValueAtPercentile(99.9, TimeUnit.MICROSECONDS),
+                    latency.getMax(TimeUnit.MICROSECONDS),
+                    rollbackRate(),
+                    acquireLatency.getValueAtPercentile(99, TimeUnit.MICROSECONDS),
+                    conserved());
+        }
+
+        String detail() {
+            Map<String, Long> causes = new TreeMap<>();
+            rollbackCauses.forEach((cause, count) -> causes.put(cause, count.sum()));
+            return String.format("[%s pool=%d] committed=%d, rollbacks=%d %s, connection acquire p50=%dus p99=%dus, "
+                            + "accounts=%d, total money expected=%d actual=%d (diff=%d)",
+                    strategy, poolSize, committed.sum(), rollbacks(), causes,
+                    acquireLatency.getValueAtPercentile(50, TimeUnit.MICROSECONDS),
+                    acquireLatency.getValueAtPercentile(99, TimeUnit.MICROSECONDS),
+                    accountCount, expectedTotal, actualTotal, actualTotal - expectedTotal)
+                    + (auditor == null ? "" : String.format(", audit drifts=%d (total=%d, last=%d, transfers=%s), blind writes=%d",
+                    auditor.getDriftCount(), auditor.getTotalDrift(), auditor.getLastDrift(), auditor.getLastDriftTransfers(), auditor.getBlindWriteCount()));
+        }
+    }
+
+    static class Options {
+
+        List<String> strategies = List.of("v4");
+        List<Integer> pools = List.of(10);
+        List<Long> audits = List.of(0L);
+        int accounts = 1000;
+        double skew = 1.0;
+        int threads = 16;
+        int durationSeconds = 10;
+        int warmupSeconds = 3;
+        int amount = 1;
+        int balance = 1_000_000;
+        long seed = 42;
+        String url = BenchmarkDataSources.URL;
+        String username = BenchmarkDataSources.USERNAME;
+        String password = BenchmarkDataSources.PASSWORD;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("expected key=value, arg = " + arg);
+                }
+                String key = arg.substring(0, eq);
+                String value = arg.substring(eq + 1);
+                switch (key) {
+                    case "strategy":
+                        options.strategies = value.equals("all") ? ALL_STRATEGIES : List.of(value.split(","));
+                        break;
+                    case "pool":
+                        List<Integer> pools = new ArrayList<>();
+                        for (String pool : value.split(",")) {
+                            pools.add(Integer.parseInt(pool));
+                        }
+                        options.pools = pools;
+                        break;
+                    case "accounts":
+                        options.accounts = Integer.parseInt(value);
+                        break;
+                    case "skew":
+                        options.skew = Double.parseDouble(value);
+                        break;
+                    case "threads":
+                        options.threads = Integer.parseInt(value);
+                        break;
+                    case "duration":
+                        options.durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "warmup":
+                        options.warmupSeconds = Integer.parseInt(value);
+                        break;
+                    case "amount":
+                        options.amount = Integer.parseInt(value);
+                        break;
+                    case "balance":
+                        options.balance = Integer.parseInt(value);
+                        break;
+                    case "seed":
+                        options.seed = Long.parseLong(value);
+                        break;
+                    case "url":
+                        options.url = value;
+                        break;
+                    case "username":
+                        options.username = value;
+                        break;
+                    case "password":
+                        options.password = value;
+                        break;
+                    case "audit":
+                        List<Long> audits = new ArrayList<>();
+                        for (String audit : value.split(",")) {
+                            audits.add(Long.parseLong(audit));
+                        }
+                        options.audits = audits;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option = " + key);
+                }
+            }
+            if (options.accounts < 2 || options.accounts > 1_000_000) {
+                throw new IllegalArgumentException("accounts must be 2 ~ 1000000, accounts = " + options.accounts);
+            }
+            return options;
+        }
+
+        @Override
+        public String toString() {
+            return "strategies=" + strategies + ", pools=" + pools + ", accounts=" + accounts + ", skew=" + skew
+                    + ", threads=" + threads + ", duration=" + durationSeconds + "s, warmup=" + warmupSeconds
+                    + "s, amount=" + amount + ", balance=" + balance + ", seed=" + seed + ", audit=" + audits + ", url=" + url;
+        }
+    }
+}
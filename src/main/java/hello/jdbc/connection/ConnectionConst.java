@@ -2,8 +2,68 @@ package hello.jdbc.connection;
 
 public abstract class ConnectionConst {
 
+    // 접속할 DB - 시스템 프로퍼티 jdbc.db 로 바꾼다. (ex: ./gradlew test -Pjdbc.db=mem)
+    // tcp    : 외부 H2 서버 (기본)
+    // mem    : JVM 안의 메모리 DB - 서버 없이 바로 실행, member 테이블은 schema.sql 로 자동 생성
+    // server : JVM 안에 H2 TCP 서버(EMBEDDED_SERVER_PORT)를 띄우고 TCP 로 메모리 DB 에 접속
+    public static final String DB = System.getProperty("jdbc.db", "tcp");
+
+    public static final String TCP_URL = "jdbc:h2:tcp://localhost/~/jdbc";
+    public static final String MEM_URL = "jdbc:h2:mem:jdbc;DB_CLOSE_DELAY=-1";
+    public static final int EMBEDDED_SERVER_PORT = Integer.getInteger("jdbc.server.port", 9093);
+    public static final String SERVER_URL = "jdbc:h2:tcp://localhost:" + EMBEDDED_SERVER_PORT + "/mem:jdbc;DB_CLOSE_DELAY=-1";
+
+    // 메모리 DB 는 접속할 때마다 member 테이블이 있는지 확인하고 없으면 만든다. (schema.sql 과 같은 테이블)
+    // runscript from 'classpath:...' 는 TCP 접속이면 서버 쪽에서 파일을 찾으므로 SQL 을 직접 넣는다.
+    private static final String MEMBER_DDL =
+            "create table if not exists %s (member_id varchar(10), money integer not null default 0, "
+                    + "version bigint not null default 0, primary key (member_id))";
+    // 예전에 만든 테이블에는 낙관적 락 버전 컬럼이 없다. (tcp 의 ~/jdbc 는 schema.sql 의 alter 를 직접 실행한다)
+    private static final String MEMBER_MIGRATION =
+            "alter table %s add column if not exists version bigint not null default 0";
+
     // abstract 로 객체 생성 못하게 막기.
-    public static final String URL = "jdbc:h2:tcp://localhost/~/jdbc";
+    public static final String URL = url();
     public static final String USERNAME = "sa";
     public static final String PASSWORD = "sa";
+
+    // DBConnectionUtil 풀 모드 설정
+    public static final int POOL_MAX_SIZE = 10; // 최대 커넥션 수
+    public static final int POOL_MIN_IDLE = 2; // 놀고 있어도 유지할 커넥션 수
+    public static final long POOL_IDLE_TIMEOUT_MS = 60_000; // 이 시간 이상 놀고 있는 커넥션은 닫는다. (MIN_IDLE 초과분)
+    public static final long POOL_CONNECTION_TIMEOUT_MS = 3_000; // 풀이 가득 찼을 때 커넥션을 기다리는 최대 시간
+
+    /**
+     * 같은 DB 안의 별도 스키마에 접속하는 URL - 스키마와 member 테이블이 없으면 접속할 때 만든다.
+     * 테스트 클래스마다 스키마를 나누면 같은 회원 id 를 써도 서로 겹치지 않아서 동시에 실행할 수 있다.
+     */
+    public static String schemaUrl(String schema) {
+        // INIT 안에서 여러 SQL 은 \; 로 구분한다.
+        // SQL 을 모두 해석한 다음 실행하므로 테이블은 set schema 와 상관없이 스키마 이름을 붙여서 만든다.
+        return dbUrl() + ";INIT=create schema if not exists " + schema
+                + "\\;" + String.format(MEMBER_DDL, schema + ".member")
+                + "\\;" + String.format(MEMBER_MIGRATION, schema + ".member")
+                + "\\;set schema " + schema;
+    }
+
+    private static String url() {
+        // tcp 는 테이블을 미리 만들어 둔 DB 를 쓰므로 버전 컬럼 마이그레이션만 한다. (이미 있으면 아무것도 안 함)
+        return DB.equals("tcp")
+                ? TCP_URL + ";INIT=" + String.format(MEMBER_MIGRATION, "member")
+                : dbUrl() + ";INIT=" + String.format(MEMBER_DDL, "member");
+    }
+
+    private static String dbUrl() {
+        switch (DB) {
+            case "tcp":
+                return TCP_URL;
+            case "mem":
+                return MEM_URL;
+            case "server":
+                new H2TcpServer(EMBEDDED_SERVER_PORT).start(); // JVM 이 끝날 때까지 유지 (같은 포트는 한 번만 뜬다)
+                return SERVER_URL;
+            default:
+                throw new IllegalArgumentException("unknown jdbc.db = " + DB + " (tcp, mem, server)");
+        }
+    }
 }
@@ -0,0 +1,161 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 커넥션 풀 워밍업
+ *
+ * 히카리 풀은 커넥션을 별도 쓰레드가 채우기 때문에, 애플리케이션이 뜬 직후의 요청은 커넥션을 맺는 시간을 기다린다.
+ * 스프링 빈이 모두 만들어진 뒤 (애플리케이션이 준비 완료를 알리기 전에) 아래 작업을 끝내둔다.
+ *
+ * 1. 풀을 최소 유휴 커넥션(minimumIdle) 수만큼 채운다. -> 그만큼 커넥션을 동시에 꺼냈다가 돌려준다.
+ * 2. 꺼낸 커넥션마다 검증 쿼리(select 1)를 실행한다. 실패하면 애플리케이션 시작을 실패시킨다.
+ * 3. 커넥션마다 member 테이블 SQL 을 prepare 해둔다. (H2 는 세션마다 파싱한 쿼리를 캐시한다)
+ *    prepare 에 실패한 SQL 이 있어도 나머지는 계속 prepare 하고, 끝나면 실패한 SQL 을 error 로 남긴다. (테이블이나 컬럼이 없는 스키마)
+ *
+ * jdbc.warm-up.enabled=false 로 끌 수 있다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jdbc.warm-up", name = "enabled", matchIfMissing = true)
+public class ConnectionPoolWarmUp implements SmartInitializingSingleton {
+
+    static final String VALIDATION_QUERY = "select 1";
+
+    // 리포지토리들이 쓰는 SQL 과 글자까지 같아야 한다.
+    static final String[] MEMBER_SQL = {
+            "insert into member(member_id, money) values (?, ?)",
+            "select * from member where member_id = ?",
+            "select member_id, money from member where member_id = ?",
+            "select member_id, money, version from member where member_id = ?",
+            "update member set money = ?, version = version + 1 where member_id = ?",
+            "update member set money = ?, version = version + 1 where member_id = ? and version = ?",
+            "delete from member where member_id = ?",
+            "update member set money = money + ?, version = version + 1 where member_id = ?",
+            "update member set money = money - ?, version = version + 1 where member_id = ? and money >= ?"
+    };
+
+    private final DataSource dataSource;
+
+    private volatile Duration warmUpDuration;
+    private volatile int warmedConnections;
+    private volatile Set<String> failedSql = Collections.emptySet();
+
+    public ConnectionPoolWarmUp(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        warmUp();
+    }
+
+    /**
+     * @return 워밍업한 커넥션 수
+     */
+    public int warmUp() {
+        long start = System.nanoTime();
+        int target = targetSize();
+
+        List<Connection> connections = new ArrayList<>(target);
+        Set<String> failed = new LinkedHashSet<>();
+        try {
+            // 동시에 target 개를 꺼내고 있어야 풀이 그만큼 커넥션을 만든다.
+            for (int i = 0; i < target; i++) {
+                Connection con = dataSource.getConnection();
+                connections.add(con);
+                validate(con);
+                prime(con, failed);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("connection pool warm-up failed", e);
+        } finally {
+            for (Connection con : connections) {
+                JdbcUtils.closeConnection(con); // 풀에 반납
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            // 애플리케이션은 뜨지만 이 SQL 을 쓰는 요청은 실패한다. (스키마가 리포지토리 SQL 과 맞지 않음)
+            log.error("member sql prepare failed during warm-up, check the member table schema failed={}", failed);
+        }
+
+        failedSql = Collections.unmodifiableSet(failed);
+        warmedConnections = connections.size();
+        warmUpDuration = Duration.ofNanos(System.nanoTime() - start);
+        log.info("connection pool warmed up connections={}, duration={}ms", warmedConnections, warmUpDuration.toMillis());
+        return warmedConnections;
+    }
+
+    /**
+     * @return 마지막 워밍업에 걸린 시간, 아직 안 했으면 null
+     */
+    public Duration getWarmUpDuration() {
+        return warmUpDuration;
+    }
+
+    public int getWarmedConnections() {
+        return warmedConnections;
+    }
+
+    /**
+     * @return 마지막 워밍업에서 prepare 에 실패한 SQL
+     */
+    public Set<String> getFailedSql() {
+        return failedSql;
+    }
+
+    private int targetSize() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+                return Math.max(1, Math.min(hikari.getMinimumIdle(), hikari.getMaximumPoolSize()));
+            }
+        } catch (SQLException e) {
+            log.warn("cannot read pool size, warm up one connection", e);
+        }
+        return 1; // 풀이 아니면 검증만
+    }
+
+    private void validate(Connection con) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute(VALIDATION_QUERY);
+        } finally {
+            JdbcUtils.closeStatement(stmt);
+        }
+    }
+
+    private void prime(Connection con, Set<String> failed) {
+        for (String sql : MEMBER_SQL) {
+            PreparedStatement pstmt = null;
+            try {
+                pstmt = con.prepareStatement(sql);
+            } catch (SQLException e) {
+                // 실패한 SQL 만 건너뛰고 나머지는 계속 prepare 한다.
+                if (failed.add(sql)) {
+                    log.warn("prepare failed during warm-up sql={}, {}", sql, e.getMessage());
+                }
+            } finally {
+                JdbcUtils.closeStatement(pstmt);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package hello.jdbc.connection;
 
+import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.Connection;
@@ -11,8 +12,22 @@ import static hello.jdbc.connection.ConnectionConst.*;
 @Slf4j
 public class DBConnectionUtil {
 
+    // 풀 모드 - true 면 getConnection() 이 매번 새 커넥션을 맺지 않고 풀에서 꺼내준다.
+    private static volatile boolean pooled = false;
+
+    // 처음 getPooledConnection() 할 때 만든다. (lazy)
+    private static volatile HikariDataSource pool;
+
+    public static void setPooled(boolean pooled) {
+        DBConnectionUtil.pooled = pooled;
+    }
+
     public static Connection getConnection() {
 
+        if (pooled) {
+            return getPooledConnection();
+        }
+
         try {
             /**
              * 데이터베이스에 연결하려면 JDBC가 제공하는 DriverManager.getConnection(..) 를 사용하면 된다.
@@ -32,4 +47,56 @@ public class DBConnectionUtil {
             throw new IllegalStateException(e); // checked exception 을 runtime exception 으로 바꿔서 예외를 던짐
         }
     }
+
+    /**
+     * 커넥션 풀에서 커넥션 획득
+     *
+     * 꺼낸 커넥션의 close() 는 실제로 닫지 않고 풀에 돌려준다.
+     * -> MemberRepositoryV0 처럼 쓰고 나서 con.close() 하는 코드를 그대로 써도 커넥션을 재사용한다.
+     *
+     * - 꺼낼 때 검증 : 한동안 안 쓴 커넥션은 isValid 로 살아있는지 확인하고, 죽었으면 버리고 다른 커넥션을 준다.
+     * - 놀고 있는 커넥션 정리 : POOL_MIN_IDLE 개를 넘는 커넥션은 POOL_IDLE_TIMEOUT_MS 동안 안 쓰면 닫는다.
+     */
+    public static Connection getPooledConnection() {
+        try {
+            Connection connection = pool().getConnection();
+            log.debug("get pooled connection={}", connection);
+            return connection;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 풀을 닫는다. (다음 getPooledConnection() 때 다시 만든다)
+     */
+    public static synchronized void closePool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static HikariDataSource pool() {
+        HikariDataSource dataSource = pool;
+        if (dataSource == null) {
+            synchronized (DBConnectionUtil.class) {
+                dataSource = pool;
+                if (dataSource == null) {
+                    dataSource = new HikariDataSource();
+                    dataSource.setJdbcUrl(URL);
+                    dataSource.setUsername(USERNAME);
+                    dataSource.setPassword(PASSWORD);
+                    dataSource.setMaximumPoolSize(POOL_MAX_SIZE);
+                    dataSource.setMinimumIdle(POOL_MIN_IDLE);
+                    dataSource.setIdleTimeout(POOL_IDLE_TIMEOUT_MS);
+                    dataSource.setConnectionTimeout(POOL_CONNECTION_TIMEOUT_MS);
+                    dataSource.setPoolName("DBConnectionUtilPool");
+                    pool = dataSource;
+                    log.info("connection pool created, maxSize={}, minIdle={}", POOL_MAX_SIZE, POOL_MIN_IDLE);
+                }
+            }
+        }
+        return dataSource;
+    }
 }
@@ -0,0 +1,38 @@
+package hello.jdbc.connection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AbstractDependsOnBeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+
+/**
+ * embedded-tcp 프로필 - 애플리케이션 안에 H2 TCP 서버를 띄운다.
+ *
+ * DataSource 가 서버보다 먼저 접속하면 안 되므로 (schema.sql 실행 등) DataSource 빈이 서버 빈에 의존하도록 등록한다.
+ */
+@Configuration
+@Profile("embedded-tcp")
+public class EmbeddedH2ServerConfig {
+
+    public static final String SERVER_BEAN_NAME = "h2TcpServer";
+
+    @Bean(name = SERVER_BEAN_NAME, initMethod = "start", destroyMethod = "stop")
+    public H2TcpServer h2TcpServer(@Value("${h2.tcp.port:9093}") int port) {
+        return new H2TcpServer(port);
+    }
+
+    @Bean
+    public static DataSourceDependsOnH2Server dataSourceDependsOnH2Server() {
+        return new DataSourceDependsOnH2Server();
+    }
+
+    static class DataSourceDependsOnH2Server extends AbstractDependsOnBeanFactoryPostProcessor {
+
+        DataSourceDependsOnH2Server() {
+            super(DataSource.class, SERVER_BEAN_NAME);
+        }
+    }
+}
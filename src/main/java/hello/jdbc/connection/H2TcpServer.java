@@ -0,0 +1,70 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.h2.tools.Server;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 같은 JVM 안에서 띄우는 H2 TCP 서버
+ *
+ * 외부 H2 서버 없이도 jdbc:h2:tcp://localhost:{port}/mem:{db} 로 접속할 수 있다.
+ * 메모리 DB 지만 TCP 를 거치므로 네트워크 왕복 비용이 있는 실제 환경과 비슷하게 측정할 수 있다.
+ *
+ * 같은 포트는 JVM 안에서 서버 하나를 함께 쓴다. (테스트마다 스프링 컨텍스트가 따로 떠도 포트가 겹치지 않게)
+ * 마지막으로 stop() 한 쪽이 실제로 서버를 내린다.
+ */
+@Slf4j
+public class H2TcpServer {
+
+    // 포트 -> 실행 중인 서버, 사용 중인 수
+    private static final Map<Integer, Server> servers = new HashMap<>();
+    private static final Map<Integer, Integer> users = new HashMap<>();
+
+    private final int port;
+    private boolean started;
+
+    public H2TcpServer(int port) {
+        this.port = port;
+    }
+
+    public void start() {
+        synchronized (servers) {
+            if (started) {
+                return;
+            }
+            if (!servers.containsKey(port)) {
+                try {
+                    // -ifNotExists : 접속할 때 없는 DB 는 새로 만든다. (메모리 DB)
+                    Server server = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+                    servers.put(port, server);
+                    log.info("h2 tcp server started {}", server.getURL());
+                } catch (SQLException e) {
+                    throw new IllegalStateException("h2 tcp server start failed, port = " + port, e);
+                }
+            }
+            users.merge(port, 1, Integer::sum);
+            started = true;
+        }
+    }
+
+    public void stop() {
+        synchronized (servers) {
+            if (!started) {
+                return;
+            }
+            started = false;
+            if (users.merge(port, -1, Integer::sum) == 0) {
+                users.remove(port);
+                servers.remove(port).stop();
+                log.info("h2 tcp server stopped port={}", port);
+            }
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+}
@@ -0,0 +1,262 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL 실행 시간 측정 DataSource
+ *
+ * 리포지토리는 "get connection=..." 로그만 남기고 시간은 재지 않는다.
+ * 이 DataSource 로 감싸면 리포지토리 코드를 바꾸지 않고 (V1 ~ V5, JdbcTemplate 모두) 아래를 기록한다.
+ *
+ * - SQL 별 실행 시간 히스토그램 (execute, executeQuery, executeUpdate, executeBatch)
+ * - SQL 별 반영된 row 수 (update / batch 결과)
+ * - SQL 별 예외 횟수 - SQLException 을 스프링 예외로 변환한 이름(DuplicateKeyException 등) 기준
+ *   (예외는 그대로 다시 던진다. 이름을 붙이기 위해서만 변환한다)
+ * - 커넥션 획득 대기 시간 히스토그램 (풀이 가득 차면 여기가 늘어난다)
+ *
+ * 조회 : getStats(), getAcquireLatency() / 로그 : startLogging(interval)
+ *
+ * 주의 : StatementCachingDataSource 와 함께 쓸 때는 이 DataSource 가 바깥에 있어야 한다.
+ * (StatementCachingDataSource 는 물리 커넥션에서 statement 를 만들기 때문에 안쪽 프록시를 거치지 않는다)
+ */
+@Slf4j
+public class MeasuringDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    // SQL 종류가 이보다 많으면 (SQL 에 값을 직접 넣는 경우 등) 나머지는 하나로 모은다.
+    private static final int MAX_SQL_COUNT = 512;
+    static final String OTHER_SQL = "(other)";
+
+    private final Map<String, SqlStats> stats = new ConcurrentHashMap<>();
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final SQLExceptionTranslator exTranslator;
+
+    private ScheduledExecutorService logger;
+
+    public MeasuringDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+        this.exTranslator = new SQLErrorCodeSQLExceptionTranslator(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection con = obtainTargetDataSource().getConnection();
+        acquireLatency.record(System.nanoTime() - start);
+        return measuringConnection(con);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection con = obtainTargetDataSource().getConnection(username, password);
+        acquireLatency.record(System.nanoTime() - start);
+        return measuringConnection(con);
+    }
+
+    /**
+     * @return SQL -> 통계 (SQL 이름순)
+     */
+    public Map<String, SqlStats> getStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(stats));
+    }
+
+    public SqlStats getStats(String sql) {
+        return stats.get(sql);
+    }
+
+    public LatencyHistogram getAcquireLatency() {
+        return acquireLatency;
+    }
+
+    /**
+     * interval 마다 지난 로그 이후 실행된 SQL 의 통계를 INFO 로그로 남긴다.
+     */
+    public synchronized void startLogging(Duration interval) {
+        if (logger != null) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sql-stats-logger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Long> lastCounts = new HashMap<>(); // logger 쓰레드에서만 접근
+        long intervalMillis = interval.toMillis();
+        logger.scheduleAtFixedRate(() -> dump(lastCounts), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (logger != null) {
+            logger.shutdown();
+            logger = null;
+        }
+    }
+
+    private void dump(Map<String, Long> lastCounts) {
+        log.info("connection acquire count={}, p50={}us, p99={}us, max={}us",
+                acquireLatency.getCount(),
+                acquireLatency.getValueAtPercentile(50, TimeUnit.MICROSECONDS),
+                acquireLatency.getValueAtPercentile(99, TimeUnit.MICROSECONDS),
+                acquireLatency.getMax(TimeUnit.MICROSECONDS));
+
+        for (SqlStats stat : stats.values()) {
+            LatencyHistogram latency = stat.getLatency();
+            long count = latency.getCount();
+            Long last = lastCounts.put(stat.getSql(), count);
+            if (last != null && last == count) {
+                continue; // 지난번 이후 실행되지 않은 SQL 은 생략
+            }
+            log.info("sql=[{}] count={}, p50={}us, p99={}us, p999={}us, max={}us, rows={}, errors={}",
+                    stat.getSql(), count,
+                    latency.getValueAtPercentile(50, TimeUnit.MICROSECONDS),
+                    latency.getValueAtPercentile(99, TimeUnit.MICROSECONDS),
+                    latency.getValueAtPercentile(99.9, TimeUnit.MICROSECONDS),
+                    latency.getMax(TimeUnit.MICROSECONDS),
+                    stat.getRows(), stat.getErrors());
+        }
+    }
+
+    private SqlStats statsFor(String sql) {
+        SqlStats stat = stats.get(sql);
+        if (stat != null) {
+            return stat;
+        }
+        if (stats.size() >= MAX_SQL_COUNT) {
+            sql = OTHER_SQL;
+        }
+        return stats.computeIfAbsent(sql, SqlStats::new);
+    }
+
+    private Connection measuringConnection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new MeasuringConnectionHandler(target));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class MeasuringConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        MeasuringConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement": {
+                    PreparedStatement pstmt = (PreparedStatement) MeasuringDataSource.invoke(target, method, args);
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                            new MeasuringStatementHandler(pstmt, (String) args[0]));
+                }
+                case "createStatement": {
+                    Statement stmt = (Statement) MeasuringDataSource.invoke(target, method, args);
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                            new MeasuringStatementHandler(stmt, null));
+                }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Measuring[" + target + "]";
+            }
+            return MeasuringDataSource.invoke(target, method, args);
+        }
+    }
+
+    private class MeasuringStatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql; // createStatement 면 null -> execute(sql) 의 sql 을 쓴다.
+
+        MeasuringStatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                switch (name) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                }
+                return MeasuringDataSource.invoke(target, method, args);
+            }
+
+            String sql = preparedSql;
+            if (sql == null) {
+                sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "(batch)";
+            }
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = MeasuringDataSource.invoke(target, method, args);
+            } catch (SQLException e) {
+                statsFor(sql).recordError(System.nanoTime() - start, errorType(sql, e));
+                throw e;
+            }
+            statsFor(sql).recordSuccess(System.nanoTime() - start, affectedRows(result));
+            return result;
+        }
+
+        private String errorType(String sql, SQLException e) {
+            DataAccessException translated = exTranslator.translate("measure", sql, e);
+            return translated != null ? translated.getClass().getSimpleName() : e.getClass().getSimpleName();
+        }
+
+        private long affectedRows(Object result) {
+            if (result instanceof Integer || result instanceof Long) { // executeUpdate
+                return ((Number) result).longValue();
+            }
+            if (result instanceof int[]) { // executeBatch
+                long sum = 0;
+                for (int count : (int[]) result) {
+                    sum += Math.max(count, 0);
+                }
+                return sum;
+            }
+            if (result instanceof long[]) {
+                long sum = 0;
+                for (long count : (long[]) result) {
+                    sum += Math.max(count, 0);
+                }
+                return sum;
+            }
+            return 0; // executeQuery, execute
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package hello.jdbc.connection;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 트랜잭션 측정 - 다른 트랜잭션 매니저를 감싸서 시간과 결과를 기록한다.
+ *
+ * 서비스 코드는 그대로 쓴다.
+ * - MemberServiceV3_1 : 생성자에 이 매니저를 넘긴다.
+ * - MemberServiceV3_2 : new TransactionTemplate(이 매니저)
+ * - MemberServiceV3_3, V4 (@Transactional) : 이 매니저를 PlatformTransactionManager 빈으로 등록한다.
+ *
+ * 트랜잭션 하나의 시간을 나누어 기록한다. (DataSourceTransactionManager 기준)
+ *
+ *   getTransaction ─────── 비즈니스 로직 (SQL) ─────── commit / rollback
+ *   |── begin ──|                                      |── commit ──|
+ *   (풀에서 커넥션 획득 + autocommit false)
+ *               |─────────────────── connectionHold ──────────────────|
+ *   |──────────────────────────────── duration ───────────────────────|
+ *
+ * - 히스토그램 : begin, commit, rollback, connectionHold, duration (새 트랜잭션만, 참여한 트랜잭션은 제외)
+ * - 카운터 : 시작 / 커밋 / 롤백 수, 롤백 원인별 수 (LongAdder - 쓰레드가 많아도 서로 경합하지 않는다)
+ *
+ * 롤백 원인은 트랜잭션 매니저가 볼 수 있는 것만 구분한다. (서비스에서 던진 예외 자체는 매니저에 전달되지 않는다)
+ * - rollback : 예외 등으로 rollback() 호출 (TransactionTemplate, @Transactional 의 예외 롤백 포함)
+ * - rollbackOnly : commit() 을 호출했지만 rollback-only 로 표시되어 있어서 롤백 (참여한 내부 트랜잭션 실패 등)
+ * - savepoint : NESTED 트랜잭션의 savepoint 까지만 롤백
+ * - participating : 바깥 트랜잭션에 참여한 중에 롤백 -> 바깥 트랜잭션이 rollback-only 가 된다.
+ * - commitFailed:예외이름 : 커밋하다가 예외 (커밋 실패 시 롤백된다)
+ */
+public class MeasuringTransactionManager implements PlatformTransactionManager {
+
+    public static final String CAUSE_ROLLBACK = "rollback";
+    public static final String CAUSE_ROLLBACK_ONLY = "rollbackOnly";
+    public static final String CAUSE_SAVEPOINT = "savepoint";
+    public static final String CAUSE_PARTICIPATING = "participating";
+    public static final String CAUSE_COMMIT_FAILED = "commitFailed:";
+
+    private final PlatformTransactionManager delegate;
+
+    // 진행 중인 새 트랜잭션 -> 시작 시각 (status 는 equals 를 재정의하지 않으므로 인스턴스 기준)
+    private final Map<TransactionStatus, Timing> inFlight = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram begin = new LatencyHistogram();
+    private final LatencyHistogram commit = new LatencyHistogram();
+    private final LatencyHistogram rollback = new LatencyHistogram();
+    private final LatencyHistogram connectionHold = new LatencyHistogram();
+    private final LatencyHistogram duration = new LatencyHistogram();
+
+    private final LongAdder beginCount = new LongAdder();
+    private final LongAdder commitCount = new LongAdder();
+    private final LongAdder rollbackCount = new LongAdder();
+    private final Map<String, LongAdder> rollbackCauses = new ConcurrentHashMap<>();
+
+    public MeasuringTransactionManager(PlatformTransactionManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        long start = System.nanoTime();
+        TransactionStatus status = delegate.getTransaction(definition);
+        long begun = System.nanoTime();
+
+        if (status.isNewTransaction()) {
+            begin.record(begun - start);
+            beginCount.increment();
+            inFlight.put(status, new Timing(start, begun));
+        }
+        return status;
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        Timing timing = inFlight.remove(status);
+        if (timing == null) {
+            delegate.commit(status); // 참여한 트랜잭션 / savepoint - 실제 커밋은 바깥 트랜잭션이 한다.
+            return;
+        }
+
+        // commit() 안에서 rollback-only 면 롤백으로 처리된다.
+        boolean rollbackOnly = status.isRollbackOnly();
+        long start = System.nanoTime();
+        try {
+            delegate.commit(status);
+        } catch (RuntimeException | Error e) {
+            long end = System.nanoTime();
+            rollback.record(end - start);
+            complete(timing, end);
+            // rollback-only 인데 commit() 하면 롤백 후 UnexpectedRollbackException 을 던진다.
+            countRollback(rollbackOnly ? CAUSE_ROLLBACK_ONLY : CAUSE_COMMIT_FAILED + e.getClass().getSimpleName());
+            throw e;
+        }
+        long end = System.nanoTime();
+        complete(timing, end);
+
+        if (rollbackOnly) {
+            rollback.record(end - start);
+            countRollback(CAUSE_ROLLBACK_ONLY);
+        } else {
+            commit.record(end - start);
+            commitCount.increment();
+        }
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        Timing timing = inFlight.remove(status);
+        if (timing == null) {
+            // savepoint 를 먼저 확인한다. (rollback 이 끝나면 savepoint 정보가 지워진다)
+            String cause = status.hasSavepoint() ? CAUSE_SAVEPOINT : CAUSE_PARTICIPATING;
+            delegate.rollback(status);
+            countRollback(cause);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            delegate.rollback(status);
+        } finally {
+            long end = System.nanoTime();
+            rollback.record(end - start);
+            complete(timing, end);
+            countRollback(CAUSE_ROLLBACK);
+        }
+    }
+
+    public LatencyHistogram getBeginLatency() {
+        return begin;
+    }
+
+    public LatencyHistogram getCommitLatency() {
+        return commit;
+    }
+
+    public LatencyHistogram getRollbackLatency() {
+        return rollback;
+    }
+
+    public LatencyHistogram getConnectionHoldTime() {
+        return connectionHold;
+    }
+
+    public LatencyHistogram getDuration() {
+        return duration;
+    }
+
+    public long getBeginCount() {
+        return beginCount.sum();
+    }
+
+    public long getCommitCount() {
+        return commitCount.sum();
+    }
+
+    /**
+     * @return 새 트랜잭션이 롤백된 수 (savepoint, 참여 중 롤백은 제외 - getRollbackCauses 에서 확인)
+     */
+    public long getRollbackCount() {
+        return rollbackCount.sum();
+    }
+
+    /**
+     * @return 롤백 원인 -> 횟수
+     */
+    public Map<String, Long> getRollbackCauses() {
+        Map<String, Long> result = new TreeMap<>();
+        rollbackCauses.forEach((cause, count) -> result.put(cause, count.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return 시작했지만 아직 끝나지 않은 트랜잭션 수
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private void complete(Timing timing, long end) {
+        connectionHold.record(end - timing.begun);
+        duration.record(end - timing.start);
+    }
+
+    private void countRollback(String cause) {
+        if (!cause.equals(CAUSE_SAVEPOINT) && !cause.equals(CAUSE_PARTICIPATING)) {
+            rollbackCount.increment();
+        }
+        rollbackCauses.computeIfAbsent(cause, key -> new LongAdder()).increment();
+    }
+
+    private static class Timing {
+
+        final long start;
+        final long begun;
+
+        Timing(long start, long begun) {
+            this.start = start;
+            this.begun = begun;
+        }
+    }
+}
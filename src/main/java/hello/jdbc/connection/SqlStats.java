@@ -0,0 +1,59 @@
+package hello.jdbc.connection;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL 하나의 실행 통계 - 지연시간 히스토그램, 반영된 row 수, 예외 종류별 횟수
+ */
+public class SqlStats {
+
+    private final String sql;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    SqlStats(String sql) {
+        this.sql = sql;
+    }
+
+    void recordSuccess(long nanos, long affectedRows) {
+        latency.record(nanos);
+        if (affectedRows > 0) {
+            rows.add(affectedRows);
+        }
+    }
+
+    void recordError(long nanos, String errorType) {
+        latency.record(nanos);
+        errors.computeIfAbsent(errorType, key -> new LongAdder()).increment();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * @return 스프링 예외 이름(ex: DuplicateKeyException) -> 횟수
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((type, count) -> result.put(type, count.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    public long getErrorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+}
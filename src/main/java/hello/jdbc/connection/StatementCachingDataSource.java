@@ -0,0 +1,229 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PreparedStatement 캐시 DataSource
+ *
+ * MemberRepositoryV1 ~ V4_2 는 호출할 때마다 같은 SQL 로 con.prepareStatement(sql) 를 다시 만든다.
+ * 이 DataSource 로 감싸면 물리 커넥션마다 SQL 별로 PreparedStatement 를 캐시해두고 재사용한다.
+ *
+ * - 리포지토리 코드는 그대로 : pstmt.close() 를 호출하면 실제로 닫지 않고 파라미터만 비운 뒤 캐시로 돌아간다.
+ * - DataSourceUtils.getConnection / releaseConnection, 트랜잭션 매니저와 함께 써도 된다.
+ *   (커넥션 풀에서 꺼낼 때마다 프록시는 새로 만들지만, 캐시는 그 안의 물리 커넥션 기준이다)
+ * - 커넥션마다 maxStatements 개까지만 캐시하고, 넘으면 가장 오래 안 쓴 statement 를 닫는다. (LRU)
+ * - 같은 SQL 의 statement 가 아직 사용 중이면 (닫기 전에 또 요청) 캐시하지 않는 statement 를 새로 만든다.
+ *
+ * 주의 : statement 는 풀의 커넥션 프록시가 아니라 물리 커넥션에서 만들기 때문에,
+ * 풀이 커넥션을 반납할 때 해주는 statement 정리/롤백 대상에서 빠진다. -> 트랜잭션은 트랜잭션 매니저로 커밋/롤백해야 한다.
+ */
+@Slf4j
+public class StatementCachingDataSource extends DelegatingDataSource {
+
+    // 이 횟수마다 한 번씩 닫힌 물리 커넥션의 캐시를 정리한다.
+    private static final int PURGE_INTERVAL = 1024;
+
+    private final int maxStatements;
+    private final Map<Connection, StatementCache> caches = new ConcurrentHashMap<>();
+    private final AtomicLong connectionCount = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public StatementCachingDataSource(DataSource targetDataSource, int maxStatements) {
+        super(targetDataSource);
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return cachingConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return cachingConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    private Connection cachingConnection(Connection target) throws SQLException {
+        if (connectionCount.incrementAndGet() % PURGE_INTERVAL == 0) {
+            purgeClosed();
+        }
+
+        // 풀이 돌려준 커넥션 프록시 -> 실제 물리 커넥션
+        Connection physical = target.isWrapperFor(Connection.class) ? target.unwrap(Connection.class) : target;
+        StatementCache cache = caches.computeIfAbsent(physical, StatementCache::new);
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new CachingConnectionHandler(target, cache));
+    }
+
+    private void purgeClosed() {
+        caches.entrySet().removeIf(entry -> {
+            try {
+                return entry.getKey().isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class CachingConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final StatementCache cache;
+
+        CachingConnectionHandler(Connection target, StatementCache cache) {
+            this.target = target;
+            this.cache = cache;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    if (args.length == 1) { // prepareStatement(String sql) 만 캐시
+                        return cache.prepare((String) args[0]);
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StatementCaching[" + target + "]";
+            }
+            return StatementCachingDataSource.invoke(target, method, args);
+        }
+    }
+
+    /**
+     * 물리 커넥션 하나의 statement 캐시
+     * 물리 커넥션은 한 번에 한 쓰레드만 쓰지만, 정리(evict) 때문에 synchronized 로 감싼다.
+     */
+    private class StatementCache {
+
+        private final Connection physical;
+        private final LinkedHashMap<String, CachedStatement> statements;
+
+        StatementCache(Connection physical) {
+            this.physical = physical;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() > maxStatements) {
+                        eldest.getValue().evicted = true;
+                        if (!eldest.getValue().inUse) {
+                            JdbcUtils.closeStatement(eldest.getValue().target);
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized PreparedStatement prepare(String sql) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+
+            if (cached != null && cached.target.isClosed()) {
+                statements.remove(sql); // 드라이버/풀이 닫아버린 경우
+                cached = null;
+            }
+
+            if (cached == null) {
+                missCount.increment();
+                cached = new CachedStatement(this, physical.prepareStatement(sql));
+                statements.put(sql, cached);
+            } else if (cached.inUse) {
+                // 같은 SQL 을 닫기 전에 또 요청 -> 캐시하지 않는 statement
+                missCount.increment();
+                return physical.prepareStatement(sql);
+            } else {
+                hitCount.increment();
+            }
+
+            cached.inUse = true;
+            return cached.proxy;
+        }
+
+        synchronized void release(CachedStatement cached) throws SQLException {
+            if (!cached.inUse) {
+                return; // 이미 돌려받음 (close 두 번 호출)
+            }
+            cached.inUse = false;
+            if (cached.evicted) {
+                cached.target.close();
+                return;
+            }
+            cached.target.clearParameters(); // 다음에 쓸 때 이전 파라미터가 남지 않도록
+        }
+    }
+
+    private static class CachedStatement implements InvocationHandler {
+
+        final StatementCache cache;
+        final PreparedStatement target;
+        final PreparedStatement proxy;
+
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(StatementCache cache, PreparedStatement target) {
+            this.cache = cache;
+            this.target = target;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(CachedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    cache.release(this); // 실제로 닫지 않고 캐시로 돌려보낸다.
+                    return null;
+                case "isClosed":
+                    synchronized (cache) {
+                        return !inUse || target.isClosed();
+                    }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+            }
+            return StatementCachingDataSource.invoke(target, method, args);
+        }
+    }
+}
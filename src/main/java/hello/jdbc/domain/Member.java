@@ -8,6 +8,9 @@ public class Member {
     private String memberId;
     private int money;
 
+    // 낙관적 락 버전 - findByIdWithVersion 으로 조회했을 때만 채워진다. (그 외에는 null)
+    private Long version;
+
     // 기본 생성자
     public Member() {
 
@@ -17,4 +20,10 @@ public class Member {
         this.memberId = memberId;
         this.money = money;
     }
+
+    public Member(String memberId, int money, long version) {
+        this.memberId = memberId;
+        this.money = money;
+        this.version = version;
+    }
 }
@@ -0,0 +1,182 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 비동기 리포지토리 - MemberRepository(MemberRepositoryV5 등) 호출을 별도 실행기에서 하고 CompletableFuture 로 돌려준다.
+ *
+ * 요청 하나가 여러 회원을 조회할 때 호출하는 쓰레드를 막지 않고 한 번에 보낼 수 있다.
+ * ex) CompletableFuture.allOf(async.findById(a), async.findById(b), ...)
+ *
+ * - 실행기 : JDK 21 이상이면 가상 쓰레드(작업마다 하나), 아니면 커넥션 풀 크기만큼의 플랫폼 쓰레드 풀
+ * - 역압력(back-pressure) : 동시에 진행할 수 있는 작업 수를 커넥션 풀 크기의 2배로 제한한다.
+ *   (풀 크기만큼 실행 + 그만큼 대기) 한도가 차면 호출한 쓰레드가 acquireTimeout 까지 기다리고,
+ *   그래도 자리가 없으면 RejectedExecutionException 으로 실패한 future 를 돌려준다. -> 작업이 끝없이 쌓이지 않는다.
+ *   자리는 future 가 아니라 작업이 끝날 때 돌려받는다. (future 를 취소해도 JDBC 호출은 커넥션을 쥔 채 계속 실행된다)
+ *
+ * JDBC 호출 자체는 여전히 블로킹이다. 가상 쓰레드를 써도 동시에 DB 에 가는 수는 커넥션 풀 크기를 넘지 않는다.
+ */
+@Slf4j
+public class AsyncMemberRepository implements AutoCloseable {
+
+    private static final int DEFAULT_POOL_SIZE = 10; // 히카리 기본값
+
+    private final MemberRepository delegate;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final long acquireTimeoutNanos;
+
+    /**
+     * @param dataSource delegate 가 쓰는 DataSource - 히카리면 풀 크기로 동시 작업 수를 정한다.
+     */
+    public AsyncMemberRepository(MemberRepository delegate, DataSource dataSource, Duration acquireTimeout) {
+        this(delegate, poolSizeOf(dataSource), acquireTimeout);
+    }
+
+    public AsyncMemberRepository(MemberRepository delegate, int poolSize, Duration acquireTimeout) {
+        this.delegate = delegate;
+        this.maxInFlight = poolSize * 2;
+        this.permits = new Semaphore(maxInFlight);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.executor = createExecutor(poolSize, maxInFlight);
+    }
+
+    public CompletableFuture<Member> save(Member member) {
+        return submit(() -> delegate.save(member));
+    }
+
+    public CompletableFuture<Member> findById(String memberId) {
+        return submit(() -> delegate.findById(memberId));
+    }
+
+    public CompletableFuture<Map<String, Member>> findAllById(Collection<String> memberIds) {
+        return submit(() -> delegate.findAllById(memberIds));
+    }
+
+    public CompletableFuture<Void> update(String memberId, int money) {
+        return submit(() -> {
+            delegate.update(memberId, money);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> delete(String memberId) {
+        return submit(() -> {
+            delegate.delete(memberId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> addMoney(String memberId, int delta) {
+        return submit(() -> delegate.addMoney(memberId, delta));
+    }
+
+    public CompletableFuture<Boolean> withdraw(String memberId, int amount) {
+        return submit(() -> delegate.withdraw(memberId, amount));
+    }
+
+    /**
+     * @return 지금 진행 중이거나 대기 중인 작업 수
+     */
+    public int getInFlightCount() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * 새 작업을 받지 않고, 진행 중인 작업이 끝날 때까지 기다린다.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("too many pending member queries, maxInFlight = " + maxInFlight));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                T result;
+                try {
+                    result = task.get();
+                } catch (Throwable ex) {
+                    permits.release();
+                    future.completeExceptionally(ex);
+                    return;
+                }
+                permits.release();
+                future.complete(result);
+            });
+            return future;
+        } catch (RejectedExecutionException e) { // close() 이후
+            permits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static int poolSizeOf(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.warn("cannot read pool size, use default={}", DEFAULT_POOL_SIZE, e);
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+
+    /**
+     * 소스는 자바 11 이므로 가상 쓰레드 실행기는 리플렉션으로 만든다.
+     */
+    private static ExecutorService createExecutor(int poolSize, int queueSize) {
+        try {
+            ExecutorService virtual = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("async member repository uses virtual threads");
+            return virtual;
+        } catch (ReflectiveOperationException e) {
+            // JDK 21 미만
+        }
+
+        AtomicInteger sequence = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread thread = new Thread(r, "async-member-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
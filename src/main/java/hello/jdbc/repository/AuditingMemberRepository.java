@@ -0,0 +1,141 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 금액 감시 - 다른 MemberRepository 를 감싸서 조회 값과 쓰기를 MoneyAuditor 에 알린다.
+ *
+ * 쓰기는 원본 리포지토리에 그대로 위임하고, 반영된 경우에만 알린다. (addMoney, withdraw 가 false 면 알리지 않는다)
+ */
+public class AuditingMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final MoneyAuditor auditor;
+
+    public AuditingMemberRepository(MemberRepository delegate, MoneyAuditor auditor) {
+        this.delegate = delegate;
+        this.auditor = auditor;
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = delegate.save(member);
+        auditor.saved(member.getMemberId(), member.getMoney());
+        return saved;
+    }
+
+    @Override
+    public boolean saveIfAbsent(Member member) {
+        boolean created = delegate.saveIfAbsent(member);
+        if (created) {
+            auditor.saved(member.getMemberId(), member.getMoney());
+        }
+        return created;
+    }
+
+    @Override
+    public boolean upsert(Member member) {
+        boolean created = delegate.upsert(member);
+        if (created) {
+            auditor.saved(member.getMemberId(), member.getMoney());
+        } else {
+            auditor.updated(member.getMemberId(), member.getMoney());
+        }
+        return created;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        Member member = delegate.findById(memberId);
+        auditor.read(memberId, member.getMoney());
+        return member;
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        Member member = delegate.findByIdForUpdate(memberId);
+        auditor.read(memberId, member.getMoney());
+        return member;
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+        Map<String, Member> result = delegate.findAllById(memberIds);
+        for (Member member : result.values()) {
+            auditor.read(member.getMemberId(), member.getMoney());
+        }
+        return result;
+    }
+
+    @Override
+    public void streamAll(Consumer<Member> action, int fetchSize) {
+        delegate.streamAll(action, fetchSize);
+    }
+
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        return delegate.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        delegate.update(memberId, money);
+        auditor.updated(memberId, money);
+    }
+
+    @Override
+    public Member findByIdWithVersion(String memberId) {
+        Member member = delegate.findByIdWithVersion(memberId);
+        auditor.read(memberId, member.getMoney());
+        return member;
+    }
+
+    @Override
+    public void update(String memberId, int money, long version) {
+        delegate.update(memberId, money, version);
+        auditor.updated(memberId, money);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        delegate.delete(memberId);
+        auditor.deleted(memberId);
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        boolean applied = delegate.addMoney(memberId, delta);
+        if (applied) {
+            auditor.added(memberId, delta);
+        }
+        return applied;
+    }
+
+    @Override
+    public boolean withdraw(String memberId, int amount) {
+        boolean applied = delegate.withdraw(memberId, amount);
+        if (applied) {
+            auditor.added(memberId, -amount);
+        }
+        return applied;
+    }
+
+    @Override
+    public BatchSaveResult saveAll(Collection<Member> members, int batchSize) {
+        BatchSaveResult result = delegate.saveAll(members, batchSize);
+
+        Set<Member> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BatchSaveResult.Failure failure : result.getFailures()) {
+            failed.add(failure.getMember());
+        }
+        for (Member member : members) {
+            if (!failed.contains(member)) {
+                auditor.saved(member.getMemberId(), member.getMoney());
+            }
+        }
+        return result;
+    }
+}
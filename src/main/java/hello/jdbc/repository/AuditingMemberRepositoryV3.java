@@ -0,0 +1,48 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * 금액 감시 - MemberRepositoryV3 (MemberServiceV3_1 ~ V3_3 가 사용) 의 조회 값과 쓰기를 MoneyAuditor 에 알린다.
+ *
+ * V3 서비스는 findById 로 읽은 값으로 update 하므로 (읽고-고치고-쓰기) 동시에 이체하면 수정을 잃어버릴 수 있다.
+ * MemberServiceV3_x 생성자에 MemberRepositoryV3 대신 넘긴다.
+ */
+public class AuditingMemberRepositoryV3 extends MemberRepositoryV3 {
+
+    private final MoneyAuditor auditor;
+
+    public AuditingMemberRepositoryV3(DataSource dataSource, MoneyAuditor auditor) {
+        super(dataSource);
+        this.auditor = auditor;
+    }
+
+    @Override
+    public Member save(Member member) throws SQLException {
+        Member saved = super.save(member);
+        auditor.saved(member.getMemberId(), member.getMoney());
+        return saved;
+    }
+
+    @Override
+    public Member findById(String memberId) throws SQLException {
+        Member member = super.findById(memberId);
+        auditor.read(memberId, member.getMoney());
+        return member;
+    }
+
+    @Override
+    public void update(String memberId, int money) throws SQLException {
+        super.update(memberId, money);
+        auditor.updated(memberId, money);
+    }
+
+    @Override
+    public void delete(String memberId) throws SQLException {
+        super.delete(memberId);
+        auditor.deleted(memberId);
+    }
+}
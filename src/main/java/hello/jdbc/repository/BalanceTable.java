@@ -0,0 +1,372 @@
+package hello.jdbc.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 메모리 잔액 테이블 (memberId -> money)
+ *
+ * - Map<String, Integer> 대신 String[] / int[] 배열에 직접 담는다. (open addressing, linear probing)
+ *   -> Integer 박싱, Entry 객체 할당이 없다.
+ * - memberId 해시로 여러 구역(stripe)에 나누고, 구역마다 락을 건다.
+ *   이체는 두 구역을 항상 번호 순서대로 잠그기 때문에 데드락이 생기지 않는다.
+ * - 바뀐 회원(dirty)과 지운 회원을 기록해두었다가 drain 으로 한 번에 꺼내간다. (DB 반영용 저널)
+ */
+class BalanceTable {
+
+    private static final int STRIPE_COUNT = 64; // 2의 거듭제곱
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    BalanceTable() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe(i);
+        }
+    }
+
+    /**
+     * @return 새로 추가되었으면 true, 이미 있으면 false (값은 바꾸지 않는다)
+     */
+    boolean insert(String memberId, int money) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            if (stripe.indexOf(memberId) >= 0) {
+                return false;
+            }
+            stripe.put(memberId, money, true);
+            return true;
+        }
+    }
+
+    /**
+     * DB 에서 읽어온 값을 넣는다. (저널에 남기지 않음)
+     */
+    void load(String memberId, int money) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            stripe.put(memberId, money, false);
+        }
+    }
+
+    /**
+     * @return 회원이 없으면 NoSuchElementException
+     */
+    int get(String memberId) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            return stripe.values[stripe.indexOfExisting(memberId)];
+        }
+    }
+
+    boolean contains(String memberId) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            return stripe.indexOf(memberId) >= 0;
+        }
+    }
+
+    /**
+     * @return 회원이 있어서 수정했으면 true
+     */
+    boolean set(String memberId, int money) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            int index = stripe.indexOf(memberId);
+            if (index < 0) {
+                return false;
+            }
+            stripe.values[index] = money;
+            stripe.markDirty(index);
+            return true;
+        }
+    }
+
+    /**
+     * 잔액이 expected 일 때만 money 로 바꾼다.
+     *
+     * @return 회원이 있고 잔액이 expected 여서 수정했으면 true
+     */
+    boolean compareAndSet(String memberId, int expected, int money) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            int index = stripe.indexOf(memberId);
+            if (index < 0 || stripe.values[index] != expected) {
+                return false;
+            }
+            stripe.values[index] = money;
+            stripe.markDirty(index);
+            return true;
+        }
+    }
+
+    /**
+     * @return 회원이 있어서 더했으면 true
+     */
+    boolean add(String memberId, int delta) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            int index = stripe.indexOf(memberId);
+            if (index < 0) {
+                return false;
+            }
+            stripe.values[index] += delta;
+            stripe.markDirty(index);
+            return true;
+        }
+    }
+
+    /**
+     * @return 회원이 있고 잔액이 amount 이상이어서 뺐으면 true
+     */
+    boolean withdraw(String memberId, int amount) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            int index = stripe.indexOf(memberId);
+            if (index < 0 || stripe.values[index] < amount) {
+                return false;
+            }
+            stripe.values[index] -= amount;
+            stripe.markDirty(index);
+            return true;
+        }
+    }
+
+    boolean remove(String memberId) {
+        Stripe stripe = stripeFor(memberId);
+        synchronized (stripe) {
+            return stripe.remove(memberId);
+        }
+    }
+
+    /**
+     * fromId 에서 toId 로 money 를 옮긴다. (두 회원을 함께 잠근 상태에서 한 번에)
+     */
+    void transfer(String fromId, String toId, int money) {
+        Stripe fromStripe = stripeFor(fromId);
+        Stripe toStripe = stripeFor(toId);
+
+        // 항상 번호가 작은 구역부터 잠근다 -> A->B, B->A 이체가 동시에 와도 데드락 없음
+        Stripe first = fromStripe.number <= toStripe.number ? fromStripe : toStripe;
+        Stripe second = first == fromStripe ? toStripe : fromStripe;
+
+        synchronized (first) {
+            synchronized (second) {
+                int fromIndex = fromStripe.indexOfExisting(fromId);
+                int toIndex = toStripe.indexOfExisting(toId);
+
+                fromStripe.values[fromIndex] -= money;
+                fromStripe.markDirty(fromIndex);
+
+                toStripe.values[toIndex] += money;
+                toStripe.markDirty(toIndex);
+            }
+        }
+    }
+
+    /**
+     * 지난 drain 이후 바뀐 회원과 지운 회원을 꺼내고 기록을 비운다.
+     */
+    Journal drain() {
+        Journal journal = new Journal();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.drainTo(journal);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * 현재 모든 회원 (DB 전체 재반영용)
+     */
+    Journal snapshot() {
+        Journal journal = new Journal();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.snapshotTo(journal);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * 모든 회원을 action 에 넘긴다.
+     * 구역 하나씩 잠근 상태에서 복사하고, action 은 락을 푼 뒤에 호출한다. (구역 사이의 일관성은 보장하지 않는다)
+     */
+    void forEach(ObjIntConsumer<String> action) {
+        for (Stripe stripe : stripes) {
+            Journal copy = new Journal();
+            synchronized (stripe) {
+                stripe.snapshotTo(copy);
+            }
+            for (int i = 0; i < copy.changedIds.size(); i++) {
+                action.accept(copy.changedIds.get(i), copy.changedMoney.get(i));
+            }
+        }
+    }
+
+    private Stripe stripeFor(String memberId) {
+        return stripes[spread(memberId.hashCode()) & (STRIPE_COUNT - 1)];
+    }
+
+    private static int spread(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b; // 비슷한 memberId(member1, member2...)도 고르게 흩어지도록 섞는다.
+        return h ^ (h >>> 13);
+    }
+
+    static class Journal {
+
+        final List<String> changedIds = new ArrayList<>();
+        final List<Integer> changedMoney = new ArrayList<>();
+        final List<String> removedIds = new ArrayList<>();
+
+        boolean isEmpty() {
+            return changedIds.isEmpty() && removedIds.isEmpty();
+        }
+    }
+
+    private static class Stripe {
+
+        final int number;
+
+        String[] keys = new String[16];
+        int[] values = new int[16];
+        boolean[] dirty = new boolean[16];
+        int size;
+
+        final List<String> removed = new ArrayList<>();
+
+        Stripe(int number) {
+            this.number = number;
+        }
+
+        int indexOf(String key) {
+            int mask = keys.length - 1;
+            int index = spread(key.hashCode() >>> 6) & mask; // 하위 비트는 구역 선택에 썼으므로 다른 비트를 쓴다.
+
+            while (keys[index] != null) {
+                if (keys[index].equals(key)) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        int indexOfExisting(String key) {
+            int index = indexOf(key);
+            if (index < 0) {
+                throw new NoSuchElementException("member not found memberId = " + key);
+            }
+            return index;
+        }
+
+        void put(String key, int value, boolean markDirty) {
+            int index = indexOf(key);
+
+            if (index < 0) {
+                if ((size + 1) * 2 > keys.length) { // 절반 이상 차면 두 배로
+                    resize(keys.length * 2);
+                }
+                index = slotFor(key);
+                keys[index] = key;
+                size++;
+            }
+
+            values[index] = value;
+            if (markDirty) {
+                markDirty(index);
+            }
+        }
+
+        void markDirty(int index) {
+            dirty[index] = true;
+        }
+
+        boolean remove(String key) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return false;
+            }
+
+            removed.add(key);
+            size--;
+
+            // backward shift : 지운 자리 뒤에 밀려나 있던 키들을 앞으로 당겨서 탐색이 끊기지 않게 한다.
+            int mask = keys.length - 1;
+            int hole = index;
+            int next = (hole + 1) & mask;
+
+            while (keys[next] != null) {
+                int home = spread(keys[next].hashCode() >>> 6) & mask;
+                // home 이 (hole, next] 구간 밖이면 hole 로 옮겨도 탐색 가능
+                boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+                if (movable) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    dirty[hole] = dirty[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+
+            keys[hole] = null;
+            values[hole] = 0;
+            dirty[hole] = false;
+            return true;
+        }
+
+        void drainTo(Journal journal) {
+            journal.removedIds.addAll(removed);
+            removed.clear();
+
+            for (int i = 0; i < keys.length; i++) {
+                if (dirty[i]) {
+                    journal.changedIds.add(keys[i]);
+                    journal.changedMoney.add(values[i]);
+                    dirty[i] = false;
+                }
+            }
+        }
+
+        void snapshotTo(Journal journal) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    journal.changedIds.add(keys[i]);
+                    journal.changedMoney.add(values[i]);
+                }
+            }
+        }
+
+        private int slotFor(String key) {
+            int mask = keys.length - 1;
+            int index = spread(key.hashCode() >>> 6) & mask;
+            while (keys[index] != null) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void resize(int capacity) {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldDirty = dirty;
+
+            keys = new String[capacity];
+            values = new int[capacity];
+            dirty = new boolean[capacity];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int index = slotFor(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                    dirty[index] = oldDirty[i];
+                }
+            }
+        }
+    }
+}
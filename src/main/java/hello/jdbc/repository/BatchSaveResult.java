@@ -0,0 +1,81 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * saveAll 결과
+ *
+ * 한 건이 실패해도 배치 전체를 중단하지 않고, 실패한 회원과 예외를 모아서 돌려준다.
+ */
+@Getter
+public class BatchSaveResult {
+
+    private int savedCount;
+    private final List<Failure> failures = new ArrayList<>();
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    void addSaved(int count) {
+        savedCount += count;
+    }
+
+    void addFailure(Member member, RuntimeException exception) {
+        failures.add(new Failure(member, exception));
+    }
+
+    /**
+     * BatchUpdateException 의 updateCounts 를 보고 행 단위로 성공/실패를 기록한다.
+     *
+     * 드라이버마다 동작이 다르다.
+     * - H2 처럼 실패해도 끝까지 실행하는 드라이버 : 실패한 행이 EXECUTE_FAILED 로 표시된다.
+     * - 첫 실패에서 멈추는 드라이버 : updateCounts 가 짧게 오고, 그 다음 행이 실패한 행이다.
+     *
+     * @return chunk 에서 처리가 끝난 행 수 (chunk.size() 보다 작으면 나머지는 다시 실행해야 한다)
+     */
+    int addBatchFailure(List<Member> chunk, BatchUpdateException e,
+                        Function<SQLException, ? extends RuntimeException> translator) {
+
+        int[] counts = e.getUpdateCounts();
+        SQLException rowException = e.getNextException(); // 실패한 행의 예외가 순서대로 체인으로 달려있다.
+
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+                addFailure(chunk.get(i), translator.apply(rowException != null ? rowException : e));
+                rowException = rowException != null ? rowException.getNextException() : null;
+            } else {
+                addSaved(1);
+            }
+        }
+
+        if (counts.length < chunk.size()) {
+            // 중간에 멈춘 경우 -> 멈춘 행이 실패한 행
+            addFailure(chunk.get(counts.length), translator.apply(rowException != null ? rowException : e));
+            return counts.length + 1;
+        }
+
+        return chunk.size();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Failure {
+        private final Member member;
+        private final RuntimeException exception;
+    }
+}
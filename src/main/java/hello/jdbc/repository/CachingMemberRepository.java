@@ -0,0 +1,269 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 조회 캐시 - 다른 MemberRepository 를 감싸서 findById 결과를 캐시한다.
+ *
+ * save, update, delete, addMoney, withdraw 는 원본 리포지토리에 그대로 위임하고 캐시에서 지운다.
+ *
+ * 트랜잭션 안에서는 (ex: MemberServiceV4.accountTransfer)
+ * - 트랜잭션 안에서 조회한 값은 커밋된 뒤에만 캐시에 넣는다. (롤백되면 버린다)
+ * - 트랜잭션 안에서 수정한 회원은 캐시를 보지 않고 원본에서 조회한다. (내가 수정한 값을 봐야 하기 때문)
+ * - 커밋/롤백이 끝나면 수정한 회원을 캐시에서 한 번 더 지운다. (그 사이 다른 쓰레드가 예전 값을 넣었을 수 있다)
+ */
+@Slf4j
+public class CachingMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final MemberCache cache;
+
+    public CachingMemberRepository(MemberRepository delegate, int maximumSize, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = new MemberCache(maximumSize, ttl);
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = delegate.save(member);
+        invalidate(member.getMemberId());
+        return saved;
+    }
+
+    @Override
+    public boolean saveIfAbsent(Member member) {
+        boolean created = delegate.saveIfAbsent(member);
+        invalidate(member.getMemberId());
+        return created;
+    }
+
+    @Override
+    public boolean upsert(Member member) {
+        boolean created = delegate.upsert(member);
+        invalidate(member.getMemberId());
+        return created;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        TransactionCache txCache = currentTransactionCache();
+
+        if (txCache != null && txCache.modified.contains(memberId)) {
+            return delegate.findById(memberId); // 이 트랜잭션에서 수정한 회원 -> 캐시를 보면 안 된다.
+        }
+
+        Member cached = cache.get(memberId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = cache.generation(memberId);
+        Member member = delegate.findById(memberId);
+        putAfterCommit(txCache, member, generation);
+        return member;
+    }
+
+    /**
+     * 락을 걸어야 하므로 캐시를 거치지 않는다.
+     */
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return delegate.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+        TransactionCache txCache = currentTransactionCache();
+
+        Map<String, Member> result = new LinkedHashMap<>();
+        Map<String, Long> misses = new LinkedHashMap<>(); // 캐시에 없는 id, 조회 전 세대 값
+
+        for (String memberId : memberIds) {
+            if (result.containsKey(memberId) || misses.containsKey(memberId)) {
+                continue;
+            }
+
+            Member cached = null;
+            if (txCache == null || !txCache.modified.contains(memberId)) {
+                cached = cache.get(memberId);
+            }
+
+            if (cached != null) {
+                result.put(memberId, cached);
+            } else {
+                misses.put(memberId, cache.generation(memberId));
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            for (Member member : delegate.findAllById(misses.keySet()).values()) {
+                result.put(member.getMemberId(), member);
+
+                if (txCache == null || !txCache.modified.contains(member.getMemberId())) {
+                    putAfterCommit(txCache, member, misses.get(member.getMemberId()));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 전체 조회는 캐시를 거치지 않는다. (캐시에 넣지도 않는다)
+     */
+    @Override
+    public void streamAll(Consumer<Member> action, int fetchSize) {
+        delegate.streamAll(action, fetchSize);
+    }
+
+    /**
+     * 페이지 조회도 캐시를 거치지 않는다.
+     */
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        return delegate.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        delegate.update(memberId, money);
+        invalidate(memberId);
+    }
+
+    /**
+     * 버전은 DB 의 현재 값이어야 하므로 캐시를 거치지 않는다.
+     */
+    @Override
+    public Member findByIdWithVersion(String memberId) {
+        return delegate.findByIdWithVersion(memberId);
+    }
+
+    @Override
+    public void update(String memberId, int money, long version) {
+        delegate.update(memberId, money, version);
+        invalidate(memberId);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        delegate.delete(memberId);
+        invalidate(memberId);
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        boolean applied = delegate.addMoney(memberId, delta);
+        invalidate(memberId);
+        return applied;
+    }
+
+    @Override
+    public boolean withdraw(String memberId, int amount) {
+        boolean applied = delegate.withdraw(memberId, amount);
+        invalidate(memberId);
+        return applied;
+    }
+
+    @Override
+    public BatchSaveResult saveAll(Collection<Member> members, int batchSize) {
+        BatchSaveResult result = delegate.saveAll(members, batchSize);
+        for (Member member : members) {
+            invalidate(member.getMemberId());
+        }
+        return result;
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private void invalidate(String memberId) {
+        cache.invalidate(memberId);
+
+        TransactionCache txCache = currentTransactionCache();
+        if (txCache != null) {
+            txCache.modified.add(memberId);
+            txCache.pending.remove(memberId);
+        }
+    }
+
+    private void putAfterCommit(TransactionCache txCache, Member member, long generation) {
+        if (txCache == null) {
+            cache.put(member, generation);
+        } else {
+            // 같은 회원을 여러 번 조회하면 처음 조회한 세대 값을 유지한다.
+            txCache.pending.putIfAbsent(member.getMemberId(), new PendingPut(member, generation));
+        }
+    }
+
+    /**
+     * 트랜잭션 동기화가 켜져 있으면 (트랜잭션 안이면) 이 트랜잭션 전용 캐시 작업 목록을 꺼낸다.
+     * 처음 꺼낼 때 트랜잭션 동기화 매니저에 등록하고, 트랜잭션이 끝나면 afterCompletion 에서 반영한다.
+     */
+    private TransactionCache currentTransactionCache() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        TransactionCache txCache = (TransactionCache) TransactionSynchronizationManager.getResource(this);
+        if (txCache == null) {
+            txCache = new TransactionCache();
+            TransactionSynchronizationManager.bindResource(this, txCache);
+            TransactionSynchronizationManager.registerSynchronization(txCache);
+        }
+        return txCache;
+    }
+
+    private class TransactionCache implements TransactionSynchronization {
+
+        final Set<String> modified = new HashSet<>();
+        final Map<String, PendingPut> pending = new HashMap<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CachingMemberRepository.this);
+
+            for (String memberId : modified) {
+                cache.invalidate(memberId);
+            }
+
+            if (status == STATUS_COMMITTED) {
+                for (PendingPut put : pending.values()) {
+                    cache.put(put.member, put.generation);
+                }
+            }
+
+            log.debug("transaction completed status={}, modified={}, cached={}", status, modified.size(), pending.size());
+        }
+    }
+
+    private static class PendingPut {
+
+        final Member member;
+        final long generation;
+
+        PendingPut(Member member, long generation) {
+            this.member = member;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package hello.jdbc.repository;
+
+import org.springframework.dao.*;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 오류 코드 표를 미리 만들어 둔 예외 변환기
+ *
+ * SQLErrorCodeSQLExceptionTranslator 는 처음 변환할 때 DB 메타데이터로 어떤 DB 인지 찾고 (커넥션 필요),
+ * 변환할 때마다 DB 별 오류 코드 목록(문자열 배열)을 차례로 비교한다.
+ * 이 변환기는 DB 를 미리 정해서 만든다. (h2() 또는 builder())
+ * - 오류 코드 -> 종류 : 정렬된 int[] 에서 이진 탐색 (박싱, 문자열 비교 없음)
+ * - 종류 -> 예외 : switch
+ * - 표에 없는 코드는 SQLState 앞 두 자리로 분류하고, 그래도 모르면 UncategorizedSQLException
+ *
+ * 예외 종류와 메시지 형식은 스프링 변환기와 같다. (MemberRepositoryV4_2 등에서 그대로 바꿔 쓸 수 있다)
+ */
+public class ErrorCodeTranslator implements SQLExceptionTranslator {
+
+    public enum Category {
+        BAD_SQL_GRAMMAR,
+        DUPLICATE_KEY,
+        DATA_INTEGRITY_VIOLATION,
+        DATA_ACCESS_RESOURCE_FAILURE,
+        TRANSIENT_DATA_ACCESS_RESOURCE,
+        CANNOT_ACQUIRE_LOCK,
+        DEADLOCK_LOSER,
+        CONCURRENCY_FAILURE
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+
+    // 같은 인덱스끼리 짝 - codes 는 오름차순
+    private final int[] codes;
+    private final byte[] categories;
+
+    private ErrorCodeTranslator(int[] codes, byte[] categories) {
+        this.codes = codes;
+        this.categories = categories;
+    }
+
+    /**
+     * H2 - 스프링 sql-error-codes.xml 의 H2 설정과 같은 코드
+     */
+    public static ErrorCodeTranslator h2() {
+        return builder()
+                .map(Category.BAD_SQL_GRAMMAR, 42000, 42001, 42101, 42102, 42111, 42112, 42121, 42122, 42132)
+                .map(Category.DUPLICATE_KEY, 23001, 23505)
+                .map(Category.DATA_INTEGRITY_VIOLATION,
+                        22001, 22003, 22012, 22018, 22025, 23000, 23002, 23003, 23502, 23503, 23506, 23507, 23513)
+                .map(Category.DATA_ACCESS_RESOURCE_FAILURE, 90046, 90100, 90117, 90121, 90126)
+                .map(Category.CANNOT_ACQUIRE_LOCK, 50200)
+                .build();
+    }
+
+    /**
+     * 다른 DB 는 오류 코드를 직접 등록해서 만든다.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public DataAccessException translate(String task, String sql, SQLException ex) {
+        SQLException target = ex;
+        if (ex instanceof BatchUpdateException && ex.getNextException() != null) {
+            SQLException nested = ex.getNextException(); // 배치 실행은 실제 원인이 다음 예외에 있을 수 있다.
+            if (nested.getErrorCode() > 0 || nested.getSQLState() != null) {
+                target = nested;
+            }
+        }
+
+        int index = Arrays.binarySearch(codes, target.getErrorCode());
+        if (index >= 0) {
+            return create(CATEGORIES[categories[index]], task, sql, ex);
+        }
+
+        Category category = categoryOfSqlState(target.getSQLState());
+        if (category != null) {
+            return create(category, task, sql, ex);
+        }
+        return new UncategorizedSQLException(task, sql, ex);
+    }
+
+    private static DataAccessException create(Category category, String task, String sql, SQLException ex) {
+        if (category == Category.BAD_SQL_GRAMMAR) {
+            return new BadSqlGrammarException(task, sql, ex);
+        }
+
+        String message = task + "; " + (sql != null ? "SQL [" + sql + "]; " : "") + ex.getMessage();
+        switch (category) {
+            case DUPLICATE_KEY:
+                return new DuplicateKeyException(message, ex);
+            case DATA_INTEGRITY_VIOLATION:
+                return new DataIntegrityViolationException(message, ex);
+            case DATA_ACCESS_RESOURCE_FAILURE:
+                return new DataAccessResourceFailureException(message, ex);
+            case TRANSIENT_DATA_ACCESS_RESOURCE:
+                return new TransientDataAccessResourceException(message, ex);
+            case CANNOT_ACQUIRE_LOCK:
+                return new CannotAcquireLockException(message, ex);
+            case DEADLOCK_LOSER:
+                return new DeadlockLoserDataAccessException(message, ex);
+            default:
+                return new ConcurrencyFailureException(message, ex);
+        }
+    }
+
+    /**
+     * 코드 표에 없을 때 - SQLState 앞 두 자리(class)로 분류 (스프링 SQLStateSQLExceptionTranslator 와 같은 분류)
+     */
+    private static Category categoryOfSqlState(String sqlState) {
+        if (sqlState == null || sqlState.length() < 2) {
+            return null;
+        }
+
+        switch (sqlState.substring(0, 2)) {
+            case "07": case "21": case "2A": case "37": case "42": case "65":
+                return Category.BAD_SQL_GRAMMAR;
+            case "01": case "02": case "22": case "23": case "27": case "44":
+                return Category.DATA_INTEGRITY_VIOLATION;
+            case "08": case "53": case "54": case "57": case "58":
+                return Category.DATA_ACCESS_RESOURCE_FAILURE;
+            case "JW": case "JZ": case "S1":
+                return Category.TRANSIENT_DATA_ACCESS_RESOURCE;
+            case "40": case "61":
+                return Category.CONCURRENCY_FAILURE;
+            default:
+                return null;
+        }
+    }
+
+    public static class Builder {
+
+        private final Map<Integer, Category> mappings = new HashMap<>();
+
+        /**
+         * 같은 코드를 다시 등록하면 나중 것이 이긴다.
+         */
+        public Builder map(Category category, int... errorCodes) {
+            for (int errorCode : errorCodes) {
+                mappings.put(errorCode, category);
+            }
+            return this;
+        }
+
+        public ErrorCodeTranslator build() {
+            int[] codes = mappings.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            byte[] categories = new byte[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                categories[i] = (byte) mappings.get(codes[i]).ordinal();
+            }
+            return new ErrorCodeTranslator(codes, categories);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package hello.jdbc.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * where member_id in (?, ?, ...) 조회용 id 나누기
+ *
+ * id 개수대로 SQL 을 만들면 개수마다 다른 SQL 이 생겨서 statement 캐시가 계속 커진다.
+ * 그래서 한 번에 보내는 개수를 1, 2, 4, ... MAX_SIZE (2의 거듭제곱) 로만 맞추고,
+ * 남는 자리는 마지막 id 를 반복해서 채운다. -> SQL 종류가 최대 log2(MAX_SIZE) + 1 개로 고정된다.
+ */
+abstract class InClause {
+
+    static final int MAX_SIZE = 64;
+
+    // 크기별 "?, ?, ..." 미리 만들어두기 (index = 크기)
+    private static final String[] PLACEHOLDERS = new String[MAX_SIZE + 1];
+
+    static {
+        for (int size = 1; size <= MAX_SIZE; size <<= 1) {
+            PLACEHOLDERS[size] = String.join(", ", Collections.nCopies(size, "?"));
+        }
+    }
+
+    static String placeholders(int size) {
+        String placeholders = size <= MAX_SIZE ? PLACEHOLDERS[size] : null;
+        if (placeholders == null) {
+            throw new IllegalArgumentException("size must be a power of two <= " + MAX_SIZE + ", size = " + size);
+        }
+        return placeholders;
+    }
+
+    /**
+     * 중복을 제거한 id 들을 MAX_SIZE 이하, 2의 거듭제곱 크기의 묶음으로 나눈다.
+     */
+    static List<List<String>> chunks(Collection<String> ids) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<String>> chunks = new ArrayList<>();
+
+        for (int from = 0; from < distinct.size(); from += MAX_SIZE) {
+            List<String> chunk = new ArrayList<>(distinct.subList(from, Math.min(from + MAX_SIZE, distinct.size())));
+
+            int paddedSize = Integer.highestOneBit(chunk.size());
+            if (paddedSize < chunk.size()) {
+                paddedSize <<= 1;
+            }
+
+            String last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < paddedSize) {
+                chunk.add(last); // 같은 id 가 여러 번 들어가도 결과는 한 행
+            }
+
+            chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+}
@@ -0,0 +1,255 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 메모리 원장(ledger) 리포지토리
+ *
+ * 잔액을 메모리(BalanceTable)에 두고 모든 읽기/쓰기를 메모리에서 처리한다.
+ * DB 에는 별도 쓰레드가 flushInterval 마다 바뀐 회원만 모아서 반영한다. (비동기)
+ *
+ * - transfer : 두 회원을 함께 잠그고 한 번에 옮긴다. -> findById + update 사이에 값이 바뀌는 lost update 가 없다.
+ * - 메모리에만 반영되고 아직 flush 되지 않은 값은 프로세스가 죽으면 사라진다. (벤치마크/실험용)
+ * - 이 리포지토리를 쓰는 동안에는 다른 곳에서 member 테이블을 직접 수정하면 안 된다.
+ */
+@Slf4j
+public class LedgerMemberRepository implements MemberRepository, AutoCloseable {
+
+    private final JdbcTemplate template;
+    private final BalanceTable table = new BalanceTable();
+    private final ScheduledExecutorService flusher;
+
+    // 이전 flush 가 실패하면 다음 flush 때 전체 회원을 다시 반영한다. (flush 는 synchronized 안에서만 접근)
+    private boolean fullFlushNeeded;
+    private List<String> retryRemovedIds = new ArrayList<>();
+
+    public LedgerMemberRepository(DataSource dataSource, Duration flushInterval) {
+        this.template = new JdbcTemplate(dataSource);
+
+        // 시작할 때 DB 의 회원을 모두 메모리로 올린다.
+        template.query("select member_id, money from member",
+                (RowCallbackHandler) rs -> table.load(rs.getString("member_id"), rs.getInt("money")));
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Member save(Member member) {
+        if (!table.insert(member.getMemberId(), member.getMoney())) {
+            throw new DuplicateKeyException("member already exists memberId = " + member.getMemberId());
+        }
+        return member;
+    }
+
+    @Override
+    public boolean saveIfAbsent(Member member) {
+        return table.insert(member.getMemberId(), member.getMoney());
+    }
+
+    @Override
+    public boolean upsert(Member member) {
+        // set 과 insert 사이에 다른 쓰레드가 지우거나 넣을 수 있으므로 둘 중 하나가 성공할 때까지
+        while (true) {
+            if (table.set(member.getMemberId(), member.getMoney())) {
+                return false;
+            }
+            if (table.insert(member.getMemberId(), member.getMoney())) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return new Member(memberId, table.get(memberId));
+    }
+
+    /**
+     * 원장은 DB 트랜잭션이 없으므로 락을 걸지 않는다. (두 회원을 함께 바꿀 때는 transfer 사용)
+     */
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return findById(memberId);
+    }
+
+    /**
+     * 메모리의 회원을 구역(stripe) 단위로 복사해서 넘긴다. (fetchSize 는 쓰지 않는다)
+     */
+    @Override
+    public void streamAll(Consumer<Member> action, int fetchSize) {
+        table.forEach((memberId, money) -> action.accept(new Member(memberId, money)));
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        table.set(memberId, money);
+    }
+
+    /**
+     * 원장은 버전 컬럼이 없으므로 조회한 잔액을 버전으로 쓴다. (update 에서 잔액이 그대로일 때만 바꾼다)
+     * 중간에 바뀌었다가 같은 잔액으로 돌아와도 새 잔액은 그 값에서 계산한 것이므로 그 회원 하나의 값은 맞다.
+     */
+    @Override
+    public Member findByIdWithVersion(String memberId) {
+        int money = table.get(memberId);
+        return new Member(memberId, money, money);
+    }
+
+    /**
+     * 메모리의 값을 바로 바꾸고 DB 트랜잭션에 참여하지 않는다. -> 트랜잭션이 롤백돼도 되돌릴 수 없다.
+     * 두 번째 회원 수정이 충돌해서 롤백하면 먼저 바꾼 회원의 출금/입금만 남아 돈이 생기거나 사라지므로
+     * 트랜잭션 안에서는 쓸 수 없다. (OptimisticTransferService 대신 transfer 사용)
+     * 트랜잭션 밖에서 한 회원만 바꾸는 용도로만 쓴다.
+     *
+     * @throws InvalidDataAccessApiUsageException 트랜잭션 안에서 호출했다
+     */
+    @Override
+    public void update(String memberId, int money, long version) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new InvalidDataAccessApiUsageException(
+                    "ledger versioned update cannot join a transaction, use transfer instead memberId = " + memberId);
+        }
+        if (!table.compareAndSet(memberId, (int) version, money)) {
+            throw new OptimisticLockingFailureException(
+                    "member was updated or deleted memberId = " + memberId + ", version = " + version);
+        }
+    }
+
+    @Override
+    public void delete(String memberId) {
+        table.remove(memberId);
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        return table.add(memberId, delta);
+    }
+
+    @Override
+    public boolean withdraw(String memberId, int amount) {
+        return table.withdraw(memberId, amount);
+    }
+
+    /**
+     * 계좌이체 - fromId 에서 toId 로 money 를 옮긴다.
+     * 두 회원 중 하나라도 없으면 아무것도 바꾸지 않고 NoSuchElementException
+     */
+    public void transfer(String fromId, String toId, int money) {
+        table.transfer(fromId, toId, money);
+    }
+
+    /**
+     * 지금까지 메모리에서 바뀐 내용을 DB 에 반영한다.
+     * (지운 회원 delete -> 바뀐 회원 merge 순서, 한 트랜잭션이 아니라 배치 단위로 반영)
+     */
+    public synchronized void flush() {
+        BalanceTable.Journal journal = table.drain();
+
+        if (fullFlushNeeded) {
+            // 지난번에 반영하지 못한 변경이 있으므로 현재 전체 회원을 다시 반영한다.
+            BalanceTable.Journal snapshot = table.snapshot();
+            snapshot.removedIds.addAll(journal.removedIds);
+            journal = snapshot;
+        }
+        journal.removedIds.addAll(0, retryRemovedIds);
+
+        if (journal.isEmpty()) {
+            return;
+        }
+
+        List<String> removedIds = journal.removedIds;
+        List<String> changedIds = journal.changedIds;
+        List<Integer> changedMoney = journal.changedMoney;
+
+        try {
+            if (!removedIds.isEmpty()) {
+                template.batchUpdate("delete from member where member_id = ?", new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, removedIds.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return removedIds.size();
+                    }
+                });
+            }
+
+            // H2 merge : 있으면 update (버전도 올림), 없으면 insert
+            if (!changedIds.isEmpty()) {
+                String mergeSql = "merge into member m using (values (cast(? as varchar(10)), cast(? as integer))) s(member_id, money) " +
+                        "on m.member_id = s.member_id " +
+                        "when matched then update set money = s.money, version = m.version + 1 " +
+                        "when not matched then insert (member_id, money) values (s.member_id, s.money)";
+                template.batchUpdate(mergeSql, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, changedIds.get(i));
+                        ps.setInt(2, changedMoney.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return changedIds.size();
+                    }
+                });
+            }
+
+            fullFlushNeeded = false;
+            retryRemovedIds = new ArrayList<>();
+            log.info("ledger flushed changed={}, removed={}", changedIds.size(), removedIds.size());
+        } catch (RuntimeException e) {
+            fullFlushNeeded = true;
+            retryRemovedIds = removedIds;
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("ledger flush failed, retry with full flush", e);
+        }
+    }
+
+    /**
+     * 남은 변경을 DB 에 반영하고 flush 쓰레드를 멈춘다.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -0,0 +1,156 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 회원 캐시 - 최대 크기(LRU) + 만료 시간(TTL)
+ *
+ * 락 경합을 줄이기 위해 memberId 해시로 나눈 여러 구역(segment)에 나눠 담는다.
+ * 구역마다 접근 순서를 기억하는 LinkedHashMap 을 쓰고, 구역별 최대 크기를 넘으면 가장 오래 안 쓴 회원을 버린다.
+ *
+ * Member 는 값이 바뀔 수 있는 객체라서, 캐시에는 money 만 담고 꺼낼 때마다 새 Member 를 만들어 준다.
+ */
+class MemberCache {
+
+    private static final int SEGMENT_COUNT = 16; // 2의 거듭제곱
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final long ttlNanos;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    MemberCache(int maximumSize, Duration ttl) {
+        if (maximumSize < SEGMENT_COUNT) {
+            throw new IllegalArgumentException("maximumSize must be >= " + SEGMENT_COUNT + ", maximumSize = " + maximumSize);
+        }
+        this.ttlNanos = ttl.toNanos();
+
+        int segmentSize = maximumSize / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * @return 캐시에 없거나 만료되었으면 null
+     */
+    Member get(String memberId) {
+        Segment segment = segmentFor(memberId);
+
+        synchronized (segment) {
+            CachedMoney entry = segment.entries.get(memberId);
+
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                segment.entries.remove(memberId); // 만료
+                evictionCount.increment();
+                entry = null;
+            }
+
+            if (entry == null) {
+                missCount.increment();
+                return null;
+            }
+
+            hitCount.increment();
+            return new Member(memberId, entry.money);
+        }
+    }
+
+    /**
+     * 조회 전에 받아둔 세대 값
+     * 조회하는 사이에 invalidate 가 일어났다면 put 이 무시되어서, 예전 값이 캐시에 다시 들어가지 않는다.
+     */
+    long generation(String memberId) {
+        Segment segment = segmentFor(memberId);
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    void put(Member member, long generation) {
+        Segment segment = segmentFor(member.getMemberId());
+
+        synchronized (segment) {
+            if (segment.generation != generation) {
+                return; // 조회 도중 값이 바뀜 -> 캐시에 넣지 않는다.
+            }
+            segment.entries.put(member.getMemberId(), new CachedMoney(member.getMoney(), System.nanoTime() + ttlNanos));
+        }
+    }
+
+    void invalidate(String memberId) {
+        Segment segment = segmentFor(memberId);
+
+        synchronized (segment) {
+            segment.entries.remove(memberId);
+            segment.generation++;
+        }
+    }
+
+    long getHitCount() {
+        return hitCount.sum();
+    }
+
+    long getMissCount() {
+        return missCount.sum();
+    }
+
+    long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String memberId) {
+        int h = memberId.hashCode();
+        h ^= (h >>> 16); // 상위 비트도 섞어준다.
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private class Segment {
+
+        long generation;
+
+        // accessOrder = true -> get 할 때마다 맨 뒤로 -> 맨 앞이 가장 오래 안 쓴 회원
+        final LinkedHashMap<String, CachedMoney> entries;
+
+        Segment(int maximumSize) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedMoney> eldest) {
+                    if (size() > maximumSize) {
+                        evictionCount.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    private static class CachedMoney {
+
+        final int money;
+        final long expiresAt;
+
+        CachedMoney(int money, long expiresAt) {
+            this.money = money;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
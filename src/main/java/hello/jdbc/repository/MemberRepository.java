@@ -1,14 +1,191 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.*;
+import java.util.function.Consumer;
 
 public interface MemberRepository {
 
+    // saveAll 한 번에 executeBatch 로 보내는 기본 행 수
+    int DEFAULT_BATCH_SIZE = 1000;
+
+    // streamAll 이 DB 에서 한 번에 가져오는 기본 행 수
+    int DEFAULT_FETCH_SIZE = 1000;
+
     Member save(Member member);
 
     Member findById(String memberId);
 
+    /**
+     * 조회하면서 행 락을 건다. (select ... for update)
+     * 트랜잭션이 끝날 때까지 다른 트랜잭션은 이 회원을 수정하거나 락을 걸 수 없다.
+     */
+    Member findByIdForUpdate(String memberId);
+
     void update(String memberId, int money);
 
+    /**
+     * 버전과 함께 조회 (낙관적 락) - 돌려받은 버전을 update(memberId, money, version) 에 넘긴다.
+     */
+    Member findByIdWithVersion(String memberId);
+
+    /**
+     * 낙관적 락 수정 - 조회한 뒤 아무도 이 회원을 수정하지 않았을 때만 money 를 바꾸고 버전을 올린다.
+     * (update member set money = ?, version = version + 1 where member_id = ? and version = ?)
+     *
+     * 조회할 때 락을 걸지 않으므로 충돌이 드물면 findByIdForUpdate 보다 싸다.
+     * 충돌하면 예외가 나고, 호출한 쪽이 다시 조회해서 재시도한다. (OptimisticTransferService)
+     * 버전을 쓰는 구현체는 update, addMoney, withdraw 등 다른 쓰기에서도 버전을 올린다.
+     *
+     * 여러 회원을 차례로 수정할 때는 반드시 트랜잭션 안에서 호출해야 하고, 구현체는 트랜잭션이 롤백되면 이 수정도 되돌려야 한다.
+     * (첫 번째 회원만 수정하고 두 번째에서 충돌하면 롤백으로 첫 번째 수정이 사라져야 돈을 잃어버리지 않는다)
+     * 트랜잭션에 참여할 수 없는 구현체는 트랜잭션 안에서 호출되면 예외를 던져야 한다. (LedgerMemberRepository)
+     *
+     * @throws OptimisticLockingFailureException 버전이 다르다 (다른 트랜잭션이 먼저 수정했거나 회원이 없다)
+     */
+    void update(String memberId, int money, long version);
+
     void delete(String memberId);
+
+    /**
+     * money 에 delta 를 더한다. (update member set money = money + ?)
+     *
+     * @return 회원이 있어서 반영되었으면 true
+     */
+    boolean addMoney(String memberId, int delta);
+
+    /**
+     * 잔액이 amount 이상일 때만 amount 를 뺀다. (... and money >= ?)
+     *
+     * @return 회원이 있고 잔액이 충분해서 반영되었으면 true
+     */
+    boolean withdraw(String memberId, int amount);
+
+    /**
+     * 같은 id 의 회원이 없을 때만 저장한다. (있으면 아무것도 바꾸지 않는다)
+     *
+     * 기본 구현은 조회 후 저장한다. 구현체는 한 번의 SQL(merge) 로 처리한다.
+     * -> save 후 키 중복 예외를 잡아서 재시도하는 것보다 싸다. (실패한 insert, 예외 변환이 없다)
+     *
+     * @return 새로 저장했으면 true, 이미 있으면 false
+     */
+    default boolean saveIfAbsent(Member member) {
+        if (findAllById(List.of(member.getMemberId())).containsKey(member.getMemberId())) {
+            return false;
+        }
+        try {
+            save(member);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false; // 조회와 저장 사이에 다른 쓰레드가 저장
+        }
+    }
+
+    /**
+     * 없으면 저장, 있으면 money 를 member.getMoney() 로 바꾼다.
+     *
+     * @return 새로 저장했으면 true, 기존 회원을 수정했으면 false
+     */
+    default boolean upsert(Member member) {
+        if (saveIfAbsent(member)) {
+            return true;
+        }
+        update(member.getMemberId(), member.getMoney());
+        return false;
+    }
+
+    default BatchSaveResult saveAll(Collection<Member> members) {
+        return saveAll(members, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 여러 회원 저장
+     *
+     * 기본 구현은 한 건씩 save 를 호출한다. 배치를 지원하는 구현체는 batchSize 단위로 묶어서 보낸다.
+     * 한 건이 실패(키 중복 등)해도 나머지는 계속 저장하고, 실패한 건은 결과에 담아 돌려준다.
+     */
+    default BatchSaveResult saveAll(Collection<Member> members, int batchSize) {
+        BatchSaveResult result = new BatchSaveResult();
+
+        for (Member member : members) {
+            try {
+                save(member);
+                result.addSaved(1);
+            } catch (RuntimeException e) {
+                result.addFailure(member, e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 여러 회원 조회 (key = memberId)
+     *
+     * 없는 회원은 결과에서 빠진다.
+     * 기본 구현은 한 건씩 findById 를 호출한다. 구현체는 in 절로 묶어서 조회한다.
+     */
+    default Map<String, Member> findAllById(Collection<String> memberIds) {
+        Map<String, Member> result = new LinkedHashMap<>();
+
+        for (String memberId : memberIds) {
+            if (result.containsKey(memberId)) {
+                continue;
+            }
+            try {
+                result.put(memberId, findById(memberId));
+            } catch (NoSuchElementException | EmptyResultDataAccessException e) {
+                // 없는 회원은 건너뛴다.
+            }
+        }
+
+        return result;
+    }
+
+    default void streamAll(Consumer<Member> action) {
+        streamAll(action, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * 전체 회원을 한 건씩 action 에 넘긴다. (List 로 모으지 않는다)
+     *
+     * 앞으로만 읽는 읽기 전용 커서로 fetchSize 건씩 가져오므로 회원 수와 관계없이 메모리 사용량이 일정하다.
+     * 읽는 동안 커넥션을 잡고 있으므로 action 에서 오래 걸리는 작업은 피한다.
+     */
+    void streamAll(Consumer<Member> action, int fetchSize);
+
+    /**
+     * member_id 순서로 afterMemberId 다음 회원부터 limit 명 조회 (keyset 페이징)
+     *
+     * offset 방식은 앞 페이지의 행을 모두 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+     * keyset 방식은 "member_id > 마지막으로 본 id" 로 pk 인덱스에서 바로 찾아가므로 몇 번째 페이지든 비용이 같다.
+     * 다음 페이지는 이번 페이지 마지막 회원의 id 를 afterMemberId 로 넘겨서 조회한다.
+     *
+     * 기본 구현은 streamAll 로 전체를 읽으면서 limit 명만 남긴다. (전체 조회, 구현체는 SQL 로 바로 찾는다)
+     *
+     * @param afterMemberId null 이면 첫 페이지
+     * @return 다음 회원이 없으면 빈 List
+     */
+    default List<Member> findPage(String afterMemberId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, limit = " + limit);
+        }
+
+        TreeMap<String, Member> page = new TreeMap<>();
+        streamAll(member -> {
+            if (afterMemberId != null && member.getMemberId().compareTo(afterMemberId) <= 0) {
+                return;
+            }
+            page.put(member.getMemberId(), member);
+            if (page.size() > limit) {
+                page.pollLastEntry();
+            }
+        });
+
+        return new ArrayList<>(page.values());
+    }
 }
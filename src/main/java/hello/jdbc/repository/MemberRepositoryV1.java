@@ -93,7 +93,7 @@ public class MemberRepositoryV1 {
     }
 
     public void update(String memberId, int money) throws SQLException {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
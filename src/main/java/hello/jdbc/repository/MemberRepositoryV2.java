@@ -161,7 +161,7 @@ public class MemberRepositoryV2 {
     }
 
     public void update(String memberId, int money) throws SQLException {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -192,7 +192,7 @@ public class MemberRepositoryV2 {
      * @throws SQLException
      */
     public void update(Connection con, String memberId, int money) throws SQLException {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
 
         PreparedStatement pstmt = null;
 
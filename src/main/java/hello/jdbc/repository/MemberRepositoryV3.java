@@ -123,7 +123,7 @@ public class MemberRepositoryV3 {
     }
 
     public void update(String memberId, int money) throws SQLException {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
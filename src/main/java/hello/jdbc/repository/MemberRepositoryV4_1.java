@@ -4,12 +4,14 @@ import hello.jdbc.domain.Member;
 import hello.jdbc.repository.ex.MyDbException;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 /**
  * 예외 누수 문제 해결
@@ -89,6 +91,75 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    /**
+     * 조회하면서 행 락을 건다. (트랜잭션 안에서 사용)
+     */
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+
+        String sql = "select * from member where member_id = ? for update"; // 트랜잭션이 끝날 때까지 행 락
+
+        Connection con = null;
+
+        PreparedStatement pstmt = null;
+
+        ResultSet rs = null; // 쿼리 결과 담고있는 통
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+
+            if (rs.next()) { // 첫번째 데이터가 있냐? 있으면 t, 없으면 f
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+
+                return member;
+            } else {
+                throw new NoSuchElementException("member not found memberId = " + memberId);
+            }
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    /**
+     * 전체 회원을 커서로 fetchSize 건씩 읽으면서 한 건씩 action 에 넘긴다.
+     */
+    @Override
+    public void streamAll(Consumer<Member> action, int fetchSize) {
+
+        String sql = "select member_id, money from member";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY); // 앞으로만 읽는 읽기 전용 커서
+            pstmt.setFetchSize(fetchSize); // 한 번에 fetchSize 건씩만 가져온다.
+
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                action.accept(new Member(rs.getString(1), rs.getInt(2)));
+            }
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id = ?";
@@ -112,9 +183,10 @@ public class MemberRepositoryV4_1 implements MemberRepository {
 
     }
 
+    // 모든 수정은 버전을 올린다. (낙관적 락)
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -136,6 +208,126 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public Member findByIdWithVersion(String memberId) {
+
+        String sql = "select * from member where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return new Member(rs.getString("member_id"), rs.getInt("money"), rs.getLong("version"));
+            } else {
+                throw new NoSuchElementException("member not found memberId = " + memberId);
+            }
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    /**
+     * 버전이 같을 때만 수정 - 수정된 행이 없으면 다른 트랜잭션이 먼저 수정했거나 회원이 없다.
+     */
+    @Override
+    public void update(String memberId, int money, long version) {
+        String sql = "update member set money = ?, version = version + 1 where member_id = ? and version = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection(); // 커녁션 획득
+            pstmt = con.prepareStatement(sql); // 쿼리 날림
+
+            pstmt.setInt(1, money); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setString(2, memberId); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setLong(3, version); // 쿼리 조건절 파라미터 바인딩
+
+            int resultSize = pstmt.executeUpdate();// 쿼리 실행
+            if (resultSize == 0) {
+                throw new OptimisticLockingFailureException(
+                        "member was updated or deleted by another transaction memberId = " + memberId + ", version = " + version);
+            }
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    /**
+     * money 에 delta 를 더한다. (읽지 않고 DB 에서 바로 계산 -> 동시에 실행해도 값을 잃어버리지 않음)
+     *
+     * @return 회원이 있어서 반영되었으면 true
+     */
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        String sql = "update member set money = money + ?, version = version + 1 where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection(); // 커녁션 획득
+            pstmt = con.prepareStatement(sql); // 쿼리 날림
+
+            pstmt.setInt(1, delta); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setString(2, memberId); // 쿼리 조건절 파라미터 바인딩
+
+            int resultSize = pstmt.executeUpdate();// 쿼리 실행
+            return resultSize > 0;
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    /**
+     * 잔액이 amount 이상일 때만 amount 를 뺀다.
+     *
+     * @return 회원이 있고 잔액이 충분해서 반영되었으면 true
+     */
+    @Override
+    public boolean withdraw(String memberId, int amount) {
+        String sql = "update member set money = money - ?, version = version + 1 where member_id = ? and money >= ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection(); // 커녁션 획득
+            pstmt = con.prepareStatement(sql); // 쿼리 날림
+
+            pstmt.setInt(1, amount); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setString(2, memberId); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setInt(3, amount); // 쿼리 조건절 파라미터 바인딩
+
+            int resultSize = pstmt.executeUpdate();// 쿼리 실행
+            return resultSize > 0;
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
     // JdbcUtils 를 사용한 객체 닫아주기
     private void close(Connection con, Statement stmt, ResultSet rs) {
 
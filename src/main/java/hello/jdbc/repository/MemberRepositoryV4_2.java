@@ -3,6 +3,9 @@ package hello.jdbc.repository;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.ex.MyDbException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
@@ -11,7 +14,8 @@ import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
 import java.sql.*;
-import java.util.NoSuchElementException;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * SQLExceptionTranslator 추가
@@ -29,6 +33,14 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         this.exTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource); // 어떤 디비를 사용하는지 찾아서 사용해야 하기 때문에 dataSource 를 파라미터로 넘긴다.
     }
 
+    /**
+     * 예외 변환기를 직접 넘긴다. ex) ErrorCodeTranslator.h2() - DB 메타데이터 조회 없이 미리 만든 코드 표로 변환
+     */
+    public MemberRepositoryV4_2(DataSource dataSource, SQLExceptionTranslator exTranslator) {
+        this.dataSource = dataSource;
+        this.exTranslator = exTranslator;
+    }
+
     @Override
     public Member save(Member member) {
 
@@ -91,6 +103,251 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         }
     }
 
+    /**
+     * H2 merge using - 같은 id 가 없을 때만 insert (있으면 update count 0)
+     */
+    @Override
+    public boolean saveIfAbsent(Member member) {
+
+        String sql = "merge into member m using (values (cast(? as varchar(10)), cast(? as integer))) s(member_id, money) " +
+                "on m.member_id = s.member_id " +
+                "when not matched then insert (member_id, money) values (s.member_id, s.money)";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            DataAccessException ex = exTranslator.translate("saveIfAbsent", sql, e); // 스프링 제공 예외 변환기 사용
+            if (ex instanceof DuplicateKeyException) {
+                return false; // 동시에 같은 id 를 저장한 다른 트랜잭션이 먼저 커밋
+            }
+            throw ex;
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    /**
+     * H2 merge using - 있으면 update (버전도 올림), 없으면 insert
+     * old table 로 merge 전 행을 세서 새로 만들었는지(0) 수정했는지(1) 구분한다. (SQL 한 번)
+     *
+     * 같은 새 id 를 동시에 upsert 하면 둘 다 없다고 보고 insert 해서 늦은 쪽이 DuplicateKeyException 을 받는다.
+     * 그때는 이미 행이 있으므로 한 번 더 merge 하면 update 가 된다. -> 수정한 것(false)
+     */
+    @Override
+    public boolean upsert(Member member) {
+        try {
+            return merge(member);
+        } catch (DuplicateKeyException e) {
+            merge(member);
+            return false;
+        }
+    }
+
+    private boolean merge(Member member) {
+
+        String sql = "select count(*) from old table (" +
+                "merge into member m using (values (cast(? as varchar(10)), cast(? as integer))) s(member_id, money) " +
+                "on m.member_id = s.member_id " +
+                "when matched then update set money = s.money, version = m.version + 1 " +
+                "when not matched then insert (member_id, money) values (s.member_id, s.money))";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+
+            rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getInt(1) == 0; // 수정 전 행이 없었다 -> 새로 만듦
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("upsert", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    /**
+     * 조회하면서 행 락을 건다. (트랜잭션 안에서 사용)
+     */
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+
+        String sql = "select * from member where member_id = ? for update"; // 트랜잭션이 끝날 때까지 행 락
+
+        Connection con = null;
+
+        PreparedStatement pstmt = null;
+
+        ResultSet rs = null; // 쿼리 결과 담고있는 통
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+
+            if (rs.next()) { // 첫번째 데이터가 있냐? 있으면 t, 없으면 f
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+
+                return member;
+            } else {
+                throw new NoSuchElementException("member not found memberId = " + memberId);
+            }
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("findByIdForUpdate", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    /**
+     * in 절로 묶어서 조회
+     * 묶음 크기가 2의 거듭제곱으로 고정되어 있어서, 같은 크기의 pstmt 는 한 커넥션 안에서 재사용한다.
+     */
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+
+        Map<String, Member> result = new LinkedHashMap<>();
+        Map<Integer, PreparedStatement> statements = new HashMap<>(); // 묶음 크기별 pstmt
+
+        Connection con = null;
+        String sql = null;
+
+        try {
+            con = getConnection();
+
+            for (List<String> chunk : InClause.chunks(memberIds)) {
+                PreparedStatement pstmt = statements.get(chunk.size());
+                if (pstmt == null) {
+                    sql = "select * from member where member_id in (" + InClause.placeholders(chunk.size()) + ")";
+                    pstmt = con.prepareStatement(sql);
+                    statements.put(chunk.size(), pstmt);
+                }
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+
+                ResultSet rs = null;
+                try {
+                    rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        Member member = new Member();
+                        member.setMemberId(rs.getString("member_id"));
+                        member.setMoney(rs.getInt("money"));
+
+                        result.put(member.getMemberId(), member);
+                    }
+                } finally {
+                    JdbcUtils.closeResultSet(rs);
+                }
+            }
+
+            return result;
+        } catch (SQLException e) {
+            throw exTranslator.translate("findAllById", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            for (PreparedStatement pstmt : statements.values()) {
+                JdbcUtils.closeStatement(pstmt);
+            }
+            close(con, null, null);
+        }
+    }
+
+    /**
+     * 전체 회원을 커서로 fetchSize 건씩 읽으면서 한 건씩 action 에 넘긴다.
+     */
+    @Override
+    public void streamAll(Consumer<Member> action, int fetchSize) {
+
+        String sql = "select member_id, money from member";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY); // 앞으로만 읽는 읽기 전용 커서
+            pstmt.setFetchSize(fetchSize); // 한 번에 fetchSize 건씩만 가져온다.
+
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                action.accept(new Member(rs.getString(1), rs.getInt(2)));
+            }
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("streamAll", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    /**
+     * keyset 페이징 - member_id 가 afterMemberId 보다 큰 회원을 pk 순서로 limit 명
+     */
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, limit = " + limit);
+        }
+
+        String sql = afterMemberId == null
+                ? "select member_id, money from member order by member_id limit ?"
+                : "select member_id, money from member where member_id > ? order by member_id limit ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+
+            int index = 1;
+            if (afterMemberId != null) {
+                pstmt.setString(index++, afterMemberId);
+            }
+            pstmt.setInt(index, limit);
+
+            rs = pstmt.executeQuery();
+
+            List<Member> page = new ArrayList<>(limit);
+            while (rs.next()) {
+                page.add(new Member(rs.getString(1), rs.getInt(2)));
+            }
+            return page;
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("findPage", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id = ?";
@@ -114,9 +371,10 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
     }
 
+    // 모든 수정은 버전을 올린다. (낙관적 락)
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -138,6 +396,176 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         }
     }
 
+    @Override
+    public Member findByIdWithVersion(String memberId) {
+
+        String sql = "select * from member where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return new Member(rs.getString("member_id"), rs.getInt("money"), rs.getLong("version"));
+            } else {
+                throw new NoSuchElementException("member not found memberId = " + memberId);
+            }
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("findByIdWithVersion", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    /**
+     * 버전이 같을 때만 수정 - 수정된 행이 없으면 다른 트랜잭션이 먼저 수정했거나 회원이 없다.
+     */
+    @Override
+    public void update(String memberId, int money, long version) {
+        String sql = "update member set money = ?, version = version + 1 where member_id = ? and version = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection(); // 커녁션 획득
+            pstmt = con.prepareStatement(sql); // 쿼리 날림
+
+            pstmt.setInt(1, money); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setString(2, memberId); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setLong(3, version); // 쿼리 조건절 파라미터 바인딩
+
+            int resultSize = pstmt.executeUpdate();// 쿼리 실행
+            if (resultSize == 0) {
+                throw new OptimisticLockingFailureException(
+                        "member was updated or deleted by another transaction memberId = " + memberId + ", version = " + version);
+            }
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("update", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    /**
+     * money 에 delta 를 더한다. (읽지 않고 DB 에서 바로 계산 -> 동시에 실행해도 값을 잃어버리지 않음)
+     *
+     * @return 회원이 있어서 반영되었으면 true
+     */
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        String sql = "update member set money = money + ?, version = version + 1 where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection(); // 커녁션 획득
+            pstmt = con.prepareStatement(sql); // 쿼리 날림
+
+            pstmt.setInt(1, delta); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setString(2, memberId); // 쿼리 조건절 파라미터 바인딩
+
+            int resultSize = pstmt.executeUpdate();// 쿼리 실행
+            return resultSize > 0;
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("addMoney", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    /**
+     * 잔액이 amount 이상일 때만 amount 를 뺀다.
+     *
+     * @return 회원이 있고 잔액이 충분해서 반영되었으면 true
+     */
+    @Override
+    public boolean withdraw(String memberId, int amount) {
+        String sql = "update member set money = money - ?, version = version + 1 where member_id = ? and money >= ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection(); // 커녁션 획득
+            pstmt = con.prepareStatement(sql); // 쿼리 날림
+
+            pstmt.setInt(1, amount); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setString(2, memberId); // 쿼리 조건절 파라미터 바인딩
+            pstmt.setInt(3, amount); // 쿼리 조건절 파라미터 바인딩
+
+            int resultSize = pstmt.executeUpdate();// 쿼리 실행
+            return resultSize > 0;
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("withdraw", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    /**
+     * addBatch / executeBatch 로 batchSize 건씩 묶어서 저장
+     * 실패한 행은 결과에 담고, 나머지 행은 계속 저장한다.
+     */
+    @Override
+    public BatchSaveResult saveAll(Collection<Member> members, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive, batchSize = " + batchSize);
+        }
+
+        String sql = "insert into member(member_id, money) values (?, ?)";
+
+        List<Member> list = new ArrayList<>(members);
+        BatchSaveResult result = new BatchSaveResult();
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql); // 같은 pstmt 를 재사용하면서 파라미터만 바꿔서 쌓는다.
+
+            int from = 0;
+            while (from < list.size()) {
+                List<Member> chunk = list.subList(from, Math.min(from + batchSize, list.size()));
+
+                for (Member member : chunk) {
+                    pstmt.setString(1, member.getMemberId());
+                    pstmt.setInt(2, member.getMoney());
+                    pstmt.addBatch();
+                }
+
+                try {
+                    pstmt.executeBatch(); // chunk 전체를 한 번에 실행
+                    result.addSaved(chunk.size());
+                    from += chunk.size();
+                } catch (BatchUpdateException e) {
+                    pstmt.clearBatch();
+                    from += result.addBatchFailure(chunk, e, ex -> exTranslator.translate("saveAll", sql, ex));
+                }
+            }
+
+            return result;
+        } catch (SQLException e) {
+            throw exTranslator.translate("saveAll", sql, e); // 스프링 제공 예외 변환기 사용
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
     // JdbcUtils 를 사용한 객체 닫아주기
     private void close(Connection con, Statement stmt, ResultSet rs) {
 
@@ -2,10 +2,20 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * JDBCTemplate 사용
@@ -19,6 +29,14 @@ public class MemberRepositoryV5 implements MemberRepository {
         this.template = new JdbcTemplate(dataSource);
     }
 
+    /**
+     * 예외 변환기를 직접 넘긴다. ex) ErrorCodeTranslator.h2()
+     */
+    public MemberRepositoryV5(DataSource dataSource, SQLExceptionTranslator exTranslator) {
+        this.template = new JdbcTemplate(dataSource);
+        this.template.setExceptionTranslator(exTranslator);
+    }
+
     @Override
     public Member save(Member member) {
 
@@ -35,12 +53,145 @@ public class MemberRepositoryV5 implements MemberRepository {
     @Override
     public Member findById(String memberId) {
 
-        String sql = "select * from member where member_id = ?";
+        String sql = "select member_id, money from member where member_id = ?";
 
         // 한 건 조회는 queryForObject 사용
         return template.queryForObject(sql, memberRowMapper(), memberId);
     }
 
+    /**
+     * H2 merge using - 같은 id 가 없을 때만 insert (있으면 update count 0)
+     */
+    @Override
+    public boolean saveIfAbsent(Member member) {
+
+        String sql = "merge into member m using (values (cast(? as varchar(10)), cast(? as integer))) s(member_id, money) " +
+                "on m.member_id = s.member_id " +
+                "when not matched then insert (member_id, money) values (s.member_id, s.money)";
+
+        try {
+            return template.update(sql, member.getMemberId(), member.getMoney()) > 0;
+        } catch (DuplicateKeyException e) {
+            return false; // 동시에 같은 id 를 저장한 다른 트랜잭션이 먼저 커밋
+        }
+    }
+
+    /**
+     * H2 merge using - 있으면 update (버전도 올림), 없으면 insert
+     * old table 로 merge 전 행을 세서 새로 만들었는지(0) 수정했는지(1) 구분한다. (SQL 한 번)
+     *
+     * 같은 새 id 를 동시에 upsert 하면 둘 다 없다고 보고 insert 해서 늦은 쪽이 DuplicateKeyException 을 받는다.
+     * 그때는 이미 행이 있으므로 한 번 더 merge 하면 update 가 된다. -> 수정한 것(false)
+     */
+    @Override
+    public boolean upsert(Member member) {
+        try {
+            return merge(member);
+        } catch (DuplicateKeyException e) {
+            merge(member);
+            return false;
+        }
+    }
+
+    private boolean merge(Member member) {
+
+        String sql = "select count(*) from old table (" +
+                "merge into member m using (values (cast(? as varchar(10)), cast(? as integer))) s(member_id, money) " +
+                "on m.member_id = s.member_id " +
+                "when matched then update set money = s.money, version = m.version + 1 " +
+                "when not matched then insert (member_id, money) values (s.member_id, s.money))";
+
+        Integer before = template.queryForObject(sql, Integer.class, member.getMemberId(), member.getMoney());
+        return before != null && before == 0;
+    }
+
+    /**
+     * 조회하면서 행 락을 건다. (트랜잭션 안에서 사용)
+     */
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+
+        String sql = "select member_id, money from member where member_id = ? for update"; // 트랜잭션이 끝날 때까지 행 락
+
+        return template.queryForObject(sql, memberRowMapper(), memberId);
+    }
+
+    /**
+     * in 절로 묶어서 조회
+     * 묶음 크기가 2의 거듭제곱으로 고정되어 있어서 SQL 종류가 몇 개 안 된다. (DB 쪽 statement 캐시 재사용)
+     */
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+
+        Map<String, Member> result = new LinkedHashMap<>();
+        RowMapper<Member> rowMapper = memberRowMapper();
+
+        for (List<String> chunk : InClause.chunks(memberIds)) {
+            String sql = "select member_id, money from member where member_id in (" + InClause.placeholders(chunk.size()) + ")";
+
+            template.query(sql, rs -> {
+                Member member = rowMapper.mapRow(rs, 0);
+                result.put(member.getMemberId(), member);
+            }, chunk.toArray());
+        }
+
+        return result;
+    }
+
+    /**
+     * 전체 회원을 한 건씩 action 에 넘긴다.
+     *
+     * template.query(sql, rowMapper) 는 결과를 List 로 모두 모으기 때문에 RowCallbackHandler 로 한 건씩 넘긴다.
+     * fetchSize 는 이 조회에만 적용하려고 PreparedStatementCreator 에서 직접 설정한다. (template.setFetchSize 는 모든 조회에 적용)
+     */
+    @Override
+    public void streamAll(Consumer<Member> action, int fetchSize) {
+
+        String sql = "select member_id, money from member";
+
+        template.query(con -> {
+            PreparedStatement pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            return pstmt;
+        }, (RowCallbackHandler) rs -> action.accept(MemberRowMapper.INSTANCE.mapRow(rs, 0)));
+    }
+
+    /**
+     * streamAll 과 같지만 Member 하나를 모든 행에 재사용한다. (행마다 Member 를 만들지 않는다)
+     *
+     * action 에 넘어온 Member 는 다음 행을 읽으면 값이 바뀐다. -> 보관하지 말고 그 자리에서 값만 꺼내 써야 한다.
+     * ex) 전체 잔액 합계, 파일로 내보내기
+     */
+    public void streamAllShared(Consumer<Member> action, int fetchSize) {
+
+        String sql = "select member_id, money from member";
+        Member holder = new Member();
+
+        template.query(con -> {
+            PreparedStatement pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            return pstmt;
+        }, (RowCallbackHandler) rs -> action.accept(MemberRowMapper.mapInto(rs, holder)));
+    }
+
+    /**
+     * keyset 페이징 - member_id 가 afterMemberId 보다 큰 회원을 pk 순서로 limit 명
+     */
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, limit = " + limit);
+        }
+
+        if (afterMemberId == null) {
+            String sql = "select member_id, money from member order by member_id limit ?";
+            return template.query(sql, memberRowMapper(), limit);
+        }
+
+        String sql = "select member_id, money from member where member_id > ? order by member_id limit ?";
+        return template.query(sql, memberRowMapper(), afterMemberId, limit);
+    }
+
     @Override
     public void delete(String memberId) {
 
@@ -50,23 +201,111 @@ public class MemberRepositoryV5 implements MemberRepository {
 
     }
 
+    // 모든 수정은 버전을 올린다. -> 낙관적 락으로 조회한 쪽이 이 수정을 덮어쓰지 않는다.
     @Override
     public void update(String memberId, int money) {
 
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
 
         template.update(sql, money, memberId);
 
     }
 
+    @Override
+    public Member findByIdWithVersion(String memberId) {
+
+        String sql = "select " + MemberRowMapper.VERSIONED_COLUMNS + " from member where member_id = ?";
+
+        return template.queryForObject(sql, MemberRowMapper.VERSIONED, memberId);
+    }
+
+    /**
+     * 버전이 같을 때만 수정 - 수정된 행이 없으면 다른 트랜잭션이 먼저 수정했거나 회원이 없다.
+     */
+    @Override
+    public void update(String memberId, int money, long version) {
+
+        String sql = "update member set money = ?, version = version + 1 where member_id = ? and version = ?";
+
+        if (template.update(sql, money, memberId, version) == 0) {
+            throw new OptimisticLockingFailureException(
+                    "member was updated or deleted by another transaction memberId = " + memberId + ", version = " + version);
+        }
+    }
+
+    /**
+     * money 에 delta 를 더한다. (읽지 않고 DB 에서 바로 계산 -> 동시에 실행해도 값을 잃어버리지 않음)
+     */
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+
+        String sql = "update member set money = money + ?, version = version + 1 where member_id = ?";
+
+        return template.update(sql, delta, memberId) > 0;
+    }
+
+    /**
+     * 잔액이 amount 이상일 때만 amount 를 뺀다.
+     */
+    @Override
+    public boolean withdraw(String memberId, int amount) {
+
+        String sql = "update member set money = money - ?, version = version + 1 where member_id = ? and money >= ?";
+
+        return template.update(sql, amount, memberId, amount) > 0;
+    }
+
+    /**
+     * batchSize 건씩 묶어서 addBatch / executeBatch 로 저장
+     *
+     * template.batchUpdate 는 실패하면 BatchUpdateException 을 DataAccessException 으로 바꾸면서
+     * 어떤 행이 실패했는지(updateCounts)를 버린다.
+     * 그래서 template.execute 콜백 안에서 직접 executeBatch 를 호출하고, 실패한 행만 골라낸다.
+     * (커넥션 획득/반납, 나머지 예외 변환은 그대로 JdbcTemplate 이 해준다)
+     */
+    @Override
+    public BatchSaveResult saveAll(Collection<Member> members, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive, batchSize = " + batchSize);
+        }
+
+        String sql = "insert into member(member_id, money) values (?, ?)";
+
+        List<Member> list = new ArrayList<>(members);
+        BatchSaveResult result = new BatchSaveResult();
+
+        template.execute(sql, (PreparedStatementCallback<Void>) ps -> {
+            int from = 0;
+            while (from < list.size()) {
+                List<Member> chunk = list.subList(from, Math.min(from + batchSize, list.size()));
+
+                for (Member member : chunk) {
+                    ps.setString(1, member.getMemberId());
+                    ps.setInt(2, member.getMoney());
+                    ps.addBatch();
+                }
+
+                try {
+                    ps.executeBatch();
+                    result.addSaved(chunk.size());
+                    from += chunk.size();
+                } catch (BatchUpdateException e) {
+                    ps.clearBatch();
+                    from += result.addBatchFailure(chunk, e,
+                            ex -> template.getExceptionTranslator().translate("saveAll", sql, ex));
+                }
+            }
+            return null;
+        });
+
+        log.info("saved = {}, failed = {}", result.getSavedCount(), result.getFailures().size());
+
+        return result;
+    }
+
     // sql 쿼리 결과가 rs 에 담기는데, 이 rs 에 담긴 값을 member에 세팅해서 member를 넘김
+    // 컬럼 순서로 읽는 공유 매퍼 -> SQL 은 select member_id, money 순서로 조회해야 한다.
     private RowMapper<Member> memberRowMapper() {
-        return (rs, rowNum) -> {
-            Member member = new Member();
-            member.setMemberId(rs.getString("member_id"));
-            member.setMoney(rs.getInt("money"));
-
-            return member;
-        };
+        return MemberRowMapper.INSTANCE;
     }
 }
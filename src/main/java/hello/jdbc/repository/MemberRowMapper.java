@@ -0,0 +1,43 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * member 조회 결과 -> Member
+ *
+ * - 컬럼 이름이 아니라 순서(1, 2)로 읽는다. 이름으로 찾으면 드라이버가 매 행마다 이름을 비교/변환한다.
+ *   -> SQL 은 select * 대신 COLUMNS 순서대로 컬럼을 적어야 한다.
+ * - 상태가 없으므로 INSTANCE 하나를 공유한다.
+ */
+public final class MemberRowMapper implements RowMapper<Member> {
+
+    public static final MemberRowMapper INSTANCE = new MemberRowMapper();
+
+    // 조회 SQL 의 컬럼 순서 - select COLUMNS from member ...
+    public static final String COLUMNS = "member_id, money";
+
+    // 버전까지 읽는 매퍼 (낙관적 락) - select VERSIONED_COLUMNS from member ...
+    public static final String VERSIONED_COLUMNS = "member_id, money, version";
+    public static final RowMapper<Member> VERSIONED = (rs, rowNum) -> new Member(rs.getString(1), rs.getInt(2), rs.getLong(3));
+
+    private MemberRowMapper() {
+    }
+
+    @Override
+    public Member mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Member(rs.getString(1), rs.getInt(2));
+    }
+
+    /**
+     * 새 Member 를 만들지 않고 holder 에 현재 행을 채운다. (스트리밍 조회에서 Member 하나를 재사용)
+     */
+    public static Member mapInto(ResultSet rs, Member holder) throws SQLException {
+        holder.setMemberId(rs.getString(1));
+        holder.setMoney(rs.getInt(2));
+        return holder;
+    }
+}
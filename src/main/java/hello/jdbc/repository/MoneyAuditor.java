@@ -0,0 +1,481 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 전체 금액 보존 감시
+ *
+ * 이체는 돈을 옮길 뿐이므로 member 테이블의 sum(money) 는 변하지 않아야 한다.
+ * 읽고-고치고-쓰기 이체(MemberServiceV3_x 의 findById -> update)가 동시에 실행되면 한쪽 수정을 덮어써서 (lost update)
+ * 돈이 생기거나 사라지는데, 지금은 아무도 알아채지 못한다.
+ *
+ * 1. 쓰기 경로에서 (AuditingMemberRepository, AuditingMemberRepositoryV3) 트랜잭션마다 "의도한" 금액 변화를 모은다.
+ *    - save +money, withdraw -amount, addMoney +delta
+ *    - update(id, money) : money - (이 트랜잭션에서 조회한 값) -> 이체라면 합이 0
+ *    커밋되면 누적 합계(runningTotal)에 더하고, 롤백되면 버린다.
+ * 2. 주기적으로 (startChecking) sum(money) 를 스트리밍으로 다시 계산해서 (streamAll - 락 없음) 누적 합계와 비교한다.
+ *    다르면 drift 로 기록하고, 그 사이 커밋된 이체 중 의심 이체를 함께 남긴다.
+ *
+ * 의심 이체 : 회원을 조회한 뒤 다른 트랜잭션이 그 회원을 먼저 커밋했는데, 조회한 값을 기준으로 덮어쓴 이체.
+ * (커밋 순서는 DB 커밋 직후 afterCompletion 에서 매기므로 근사값이다. drift 가 확인됐을 때만 함께 보고한다)
+ *
+ * 기준값을 알 수 없는 쓰기(조회 없이 update, delete, 트랜잭션 밖의 update 등)가 있으면 다음 검사에서 실제 합계로 기준을 다시 잡는다.
+ *
+ * 쓰기마다 드는 비용은 트랜잭션 동기화 등록과 작은 맵 몇 개 - JDBC 왕복에 비하면 무시할 수 있다.
+ * sum 검사는 테이블 전체를 읽으므로 startChecking 은 검사 시간이 전체 시간의 1% 를 넘지 않도록 주기를 늘린다.
+ */
+@Slf4j
+public class MoneyAuditor implements AutoCloseable {
+
+    private static final int DEFAULT_RECENT_SIZE = 1024;
+    private static final int MAX_REPORTED = 20;
+    private static final int COMMIT_SLOTS = 1 << 14; // 2의 제곱수
+    private static final int CHECK_TIME_PERCENT = 1; // 검사에 쓰는 시간의 상한 (전체 시간 대비 %)
+
+    private final MemberRepository source; // sum(money) 를 다시 계산할 때 사용
+    private final LongAdder runningTotal = new LongAdder();
+    private final AtomicLong commitSequence = new AtomicLong();
+    // 회원 -> 마지막으로 수정한 커밋 번호. 회원마다 맵 항목을 두지 않고 id 해시로 칸을 나눈다. (메모리 고정, 커밋마다 할당 없음)
+    // 같은 칸의 다른 회원이 커밋하면 의심 이체로 잘못 잡힐 수 있지만, drift 자체를 놓치지는 않는다.
+    private final AtomicLongArray lastCommitted = new AtomicLongArray(COMMIT_SLOTS);
+    private final AtomicReferenceArray<TransferRecord> recent;
+    private final Deque<TransferRecord> suspects = new ArrayDeque<>(); // synchronized(suspects)
+    private final LongAdder blindWrites = new LongAdder();
+    private final LongAdder driftCount = new LongAdder();
+    private final LongAdder totalDrift = new LongAdder();
+
+    private volatile boolean rebaseline = true; // 처음 검사에서 기준을 잡는다.
+    private volatile long lastDrift;
+    private volatile List<TransferRecord> lastDriftSuspects = List.of();
+    private long lastCleanSequence; // check() 에서만 접근 (synchronized)
+
+    private ScheduledExecutorService checker;
+
+    public MoneyAuditor(MemberRepository source) {
+        this(source, DEFAULT_RECENT_SIZE);
+    }
+
+    /**
+     * @param recentSize 최근 커밋된 이체를 몇 개까지 기억할지 (drift 를 보고할 때 사용)
+     */
+    public MoneyAuditor(MemberRepository source, int recentSize) {
+        this.source = source;
+        this.recent = new AtomicReferenceArray<>(recentSize);
+    }
+
+    // ===== 쓰기 경로에서 호출 ===== //
+
+    void read(String memberId, int money) {
+        TransactionAudit tx = currentTransaction();
+        if (tx != null) {
+            tx.read(memberId, money, commitSequence.get());
+        }
+    }
+
+    void saved(String memberId, int money) {
+        apply(memberId, money);
+    }
+
+    void added(String memberId, int delta) {
+        apply(memberId, delta);
+    }
+
+    void updated(String memberId, int money) {
+        TransactionAudit tx = currentTransaction();
+        Read base = tx != null ? tx.readOf(memberId) : null;
+        if (base == null) {
+            blindWrite(memberId);
+            return;
+        }
+        tx.write(memberId, money - base.money, base);
+    }
+
+    void deleted(String memberId) {
+        TransactionAudit tx = currentTransaction();
+        Read base = tx != null ? tx.readOf(memberId) : null;
+        if (base == null) {
+            blindWrite(memberId);
+            return;
+        }
+        tx.write(memberId, -base.money, base);
+    }
+
+    /**
+     * 변화량을 알 수 없는 쓰기 - 커밋되면 다음 검사에서 기준을 다시 잡는다.
+     */
+    void blindWrite(String memberId) {
+        log.debug("blind write memberId={}", memberId);
+        TransactionAudit tx = currentTransaction();
+        if (tx == null) {
+            tx = new TransactionAudit(); // 트랜잭션 밖 - 쓰기 하나가 곧 커밋
+            tx.blind = true;
+            tx.commit();
+            return;
+        }
+        tx.blind = true;
+    }
+
+    // ===== 검사 ===== //
+
+    /**
+     * interval 마다 check() 를 실행한다.
+     * 테이블이 커서 검사가 오래 걸리면 검사 시간이 CHECK_TIME_PERCENT 를 넘지 않도록 다음 검사를 미룬다.
+     * (ex: 검사에 50ms 가 걸리면 다음 검사는 최소 4.95초 뒤)
+     */
+    public synchronized void startChecking(Duration interval) {
+        if (checker != null) {
+            return;
+        }
+        checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "money-auditor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleCheck(checker, interval.toNanos(), 0);
+    }
+
+    private void scheduleCheck(ScheduledExecutorService executor, long intervalNanos, long delayNanos) {
+        executor.schedule(() -> {
+            long start = System.nanoTime();
+            try {
+                check();
+            } catch (RuntimeException e) {
+                log.warn("money audit failed", e);
+            }
+            long elapsed = System.nanoTime() - start;
+            long minDelay = elapsed * (100 / CHECK_TIME_PERCENT - 1);
+            if (!executor.isShutdown()) {
+                scheduleCheck(executor, intervalNanos, Math.max(intervalNanos, minDelay));
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 실제 합계를 스트리밍으로 계산해서 누적 합계와 비교한다.
+     *
+     * @return 실제 합계 - 누적 합계 (0 이면 정상, 기준을 다시 잡았거나 검사 중 합계가 바뀌어서 판단할 수 없으면 0)
+     */
+    public synchronized long check() {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            long sequence = commitSequence.get();
+            boolean reset = rebaseline;
+            rebaseline = false;
+
+            long blind = blindWrites.sum();
+            long expected = runningTotal.sum();
+            long actual = streamingSum();
+            if (runningTotal.sum() != expected || blindWrites.sum() != blind) {
+                // 검사 도중 합계가 바뀌는 쓰기(save 등)가 커밋됨 -> 다음 검사에서 다시
+                rebaseline |= reset;
+                return 0;
+            }
+
+            if (reset) {
+                runningTotal.add(actual - expected);
+                lastCleanSequence = sequence;
+                log.info("money audit baseline total={}", actual);
+                return 0;
+            }
+
+            long drift = actual - expected;
+            if (drift == 0) {
+                lastCleanSequence = sequence;
+                return 0;
+            }
+            if (attempt == 0) {
+                continue; // DB 커밋과 afterCompletion 사이에 걸렸을 수 있다. 한 번 더 확인
+            }
+
+            driftCount.increment();
+            totalDrift.add(drift);
+            lastDrift = drift;
+            lastDriftSuspects = suspectsSince(lastCleanSequence);
+            log.warn("money drift detected drift={}, expected={}, actual={}, transfers since #{} = {}",
+                    drift, expected, actual, lastCleanSequence, lastDriftSuspects);
+
+            // 같은 drift 를 계속 보고하지 않도록 실제 합계로 기준을 옮긴다.
+            runningTotal.add(drift);
+            lastCleanSequence = commitSequence.get();
+            return drift;
+        }
+        return 0;
+    }
+
+    public long getRunningTotal() {
+        return runningTotal.sum();
+    }
+
+    public long getDriftCount() {
+        return driftCount.sum();
+    }
+
+    /**
+     * @return 지금까지 발견한 drift 의 합 (기준을 다시 잡은 만큼은 빠진다)
+     */
+    public long getTotalDrift() {
+        return totalDrift.sum();
+    }
+
+    /**
+     * @return 마지막으로 발견한 drift (실제 합계 - 누적 합계)
+     */
+    public long getLastDrift() {
+        return lastDrift;
+    }
+
+    /**
+     * @return 마지막 drift 를 발견했을 때 함께 보고한 이체 (의심 이체, 없으면 최근 이체)
+     */
+    public List<TransferRecord> getLastDriftTransfers() {
+        return lastDriftSuspects;
+    }
+
+    public long getBlindWriteCount() {
+        return blindWrites.sum();
+    }
+
+    public long getCommittedCount() {
+        return commitSequence.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (checker != null) {
+            checker.shutdown();
+            checker = null;
+        }
+    }
+
+    private long streamingSum() {
+        long[] sum = new long[1];
+        source.streamAll(member -> sum[0] += member.getMoney());
+        return sum[0];
+    }
+
+    /**
+     * sequence 이후 커밋된 의심 이체, 없으면 최근 이체를 돌려준다. (최대 MAX_REPORTED 개)
+     */
+    private List<TransferRecord> suspectsSince(long sequence) {
+        List<TransferRecord> result = new ArrayList<>();
+        synchronized (suspects) {
+            for (TransferRecord record : suspects) {
+                if (record.sequence > sequence && result.size() < MAX_REPORTED) {
+                    result.add(record);
+                }
+            }
+        }
+        if (!result.isEmpty()) {
+            return Collections.unmodifiableList(result);
+        }
+
+        for (int i = 0; i < recent.length() && result.size() < MAX_REPORTED; i++) {
+            TransferRecord record = recent.get(i);
+            if (record != null && record.sequence > sequence) {
+                result.add(record);
+            }
+        }
+        result.sort(Comparator.comparingLong(TransferRecord::getSequence));
+        return Collections.unmodifiableList(result);
+    }
+
+    private void apply(String memberId, int delta) {
+        TransactionAudit tx = currentTransaction();
+        if (tx == null) {
+            // 트랜잭션 밖 - 쓰기 하나가 곧 커밋
+            TransactionAudit single = new TransactionAudit();
+            single.write(memberId, delta, null);
+            single.commit();
+            return;
+        }
+        tx.write(memberId, delta, null);
+    }
+
+    private static int slotOf(String memberId) {
+        int hash = memberId.hashCode();
+        return (hash ^ (hash >>> 16)) & (COMMIT_SLOTS - 1);
+    }
+
+    private TransactionAudit currentTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        TransactionAudit tx = (TransactionAudit) TransactionSynchronizationManager.getResource(this);
+        if (tx == null) {
+            tx = new TransactionAudit();
+            TransactionSynchronizationManager.bindResource(this, tx);
+            TransactionSynchronizationManager.registerSynchronization(tx);
+        }
+        return tx;
+    }
+
+    private static class Read {
+
+        final int money;
+        final long sequence; // 조회할 때의 커밋 번호
+
+        Read(int money, long sequence) {
+            this.money = money;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * 트랜잭션 하나에서 일어난 쓰기 - 커밋되면 반영한다.
+     * 이체 하나는 회원 두세 명이므로 작은 리스트를 쓰고, 맵은 조회가 있을 때만 만든다. (쓰기 경로 비용)
+     */
+    private class TransactionAudit implements TransactionSynchronization {
+
+        Map<String, Read> reads; // 조회가 있을 때 만든다.
+        Map<String, Read> writtenFromRead; // 조회한 값을 기준으로 덮어쓴 회원 -> 처음 조회
+        final List<String> written = new ArrayList<>(2);
+        long delta;
+        boolean blind;
+
+        void read(String memberId, int money, long sequence) {
+            if (reads == null) {
+                reads = new HashMap<>(4);
+            }
+            reads.putIfAbsent(memberId, new Read(money, sequence));
+        }
+
+        Read readOf(String memberId) {
+            return reads != null ? reads.get(memberId) : null;
+        }
+
+        /**
+         * @param base 조회한 값을 기준으로 덮어쓴 경우 그 조회 (update, delete), 변화량만 반영한 경우 null
+         */
+        void write(String memberId, int delta, Read base) {
+            this.delta += delta;
+            if (!written.contains(memberId)) {
+                written.add(memberId);
+            }
+            if (base != null) {
+                if (writtenFromRead == null) {
+                    writtenFromRead = new HashMap<>(4);
+                }
+                writtenFromRead.putIfAbsent(memberId, base);
+            }
+
+            // 같은 트랜잭션의 다음 update 는 내가 쓴 값이 기준
+            Read read = readOf(memberId);
+            if (read != null) {
+                reads.put(memberId, new Read(read.money + delta, read.sequence));
+            }
+        }
+
+        // REQUIRES_NEW 등으로 트랜잭션이 보류되면 새 트랜잭션이 이 기록을 쓰지 않도록 잠시 풀어둔다.
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(MoneyAuditor.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(MoneyAuditor.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(MoneyAuditor.this);
+            if (status == STATUS_COMMITTED && (blind || !written.isEmpty())) {
+                commit();
+            }
+        }
+
+        void commit() {
+            if (blind) {
+                blindWrites.increment();
+                rebaseline = true;
+            }
+            runningTotal.add(delta);
+            long sequence = commitSequence.incrementAndGet();
+
+            Map<String, Long> overwritten = null;
+            for (String memberId : written) {
+                long previous = lastCommitted.getAndSet(slotOf(memberId), sequence);
+                Read base = writtenFromRead != null ? writtenFromRead.get(memberId) : null;
+                if (base != null && previous > base.sequence) {
+                    if (overwritten == null) {
+                        overwritten = new LinkedHashMap<>();
+                    }
+                    overwritten.put(memberId, previous);
+                }
+            }
+
+            TransferRecord record = new TransferRecord(sequence, Collections.unmodifiableList(written), delta, overwritten);
+            recent.set((int) (sequence % recent.length()), record);
+            if (overwritten != null) {
+                synchronized (suspects) {
+                    suspects.addLast(record);
+                    if (suspects.size() > recent.length()) {
+                        suspects.removeFirst();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 커밋된 이체(트랜잭션) 하나
+     */
+    public static class TransferRecord {
+
+        private final long sequence;
+        private final List<String> memberIds;
+        private final long delta;
+        private final Map<String, Long> overwritten; // 회원 -> 조회한 뒤 먼저 커밋한 이체 번호
+
+        TransferRecord(long sequence, List<String> memberIds, long delta, Map<String, Long> overwritten) {
+            this.sequence = sequence;
+            this.memberIds = memberIds;
+            this.delta = delta;
+            this.overwritten = overwritten != null ? Collections.unmodifiableMap(overwritten) : Map.of();
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public List<String> getMemberIds() {
+            return memberIds;
+        }
+
+        /**
+         * @return 이 트랜잭션이 의도한 합계 변화 (이체면 0)
+         */
+        public long getDelta() {
+            return delta;
+        }
+
+        /**
+         * @return 회원 -> 이 이체가 조회한 뒤 그 회원을 먼저 커밋한 이체 번호 (비어 있으면 의심 이체가 아님)
+         */
+        public Map<String, Long> getOverwritten() {
+            return overwritten;
+        }
+
+        public boolean isSuspect() {
+            return !overwritten.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + memberIds + (delta != 0 ? " delta=" + delta : "")
+                    + (overwritten.isEmpty() ? "" : " overwrote " + overwritten);
+        }
+    }
+}
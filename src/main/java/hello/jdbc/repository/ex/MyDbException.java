@@ -16,4 +16,12 @@ public class MyDbException extends RuntimeException {
     public MyDbException(Throwable cause) {
         super(cause);
     }
+
+    /**
+     * writableStackTrace = false 면 스택 트레이스를 채우지 않는다. (fillInStackTrace 생략, cause 는 유지)
+     * 잡아서 복구하는 예외(키 중복 후 재시도 등)는 스택 트레이스를 쓰지 않으므로 만드는 비용만 든다.
+     */
+    protected MyDbException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
 }
@@ -16,4 +16,17 @@ public class MyDuplicateKeyException extends MyDbException {
     public MyDuplicateKeyException(Throwable cause) {
         super(cause);
     }
+
+    private MyDuplicateKeyException(Throwable cause, boolean writableStackTrace) {
+        super(cause == null ? null : cause.toString(), cause, writableStackTrace);
+    }
+
+    /**
+     * 스택 트레이스 없는 키 중복 예외 - 잡아서 다른 키로 재시도하는 경우에 사용
+     * 예외 타입은 같으므로 catch (MyDuplicateKeyException e) 는 그대로 동작한다.
+     * 로그에는 cause(SQLException) 의 스택 트레이스만 남는다.
+     */
+    public static MyDuplicateKeyException stackless(Throwable cause) {
+        return new MyDuplicateKeyException(cause, false);
+    }
 }
@@ -0,0 +1,270 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 계좌이체 묶음 커밋 (group commit)
+ *
+ * MemberServiceV4 는 이체마다 트랜잭션을 하나씩 커밋하기 때문에, 이체가 많아지면 커밋 비용이 대부분을 차지한다.
+ * 여기서는 이체 요청을 큐에 쌓아두고, 쓰기 전용 쓰레드 하나가 maxBatchSize 건이 모이거나
+ * 첫 요청 후 maxWait 가 지나면 한 트랜잭션에 모아서 처리하고 한 번만 커밋한다.
+ *
+ * - 요청마다 savepoint(NESTED) 를 걸어서, 한 건이 실패("ex" 검증 실패, 잔액 부족)하면 그 건만 롤백된다.
+ * - 커밋이 끝난 뒤에 각 요청의 CompletableFuture 를 완료한다. (커밋 전에 성공을 알리지 않는다)
+ * - 커밋 자체가 실패하면 그 묶음의 요청은 모두 실패로 완료된다.
+ * - 닫은 뒤에 들어온 요청, 쓰기 쓰레드가 멈춰서 처리하지 못한 요청도 실패로 완료된다. (future 가 완료되지 않고 남지 않는다)
+ */
+@Slf4j
+public class BatchingTransferService implements AutoCloseable {
+
+    private static final int QUEUE_SIZE_PER_BATCH = 16;
+
+    // 이체 한 건의 로직 - 프록시가 아니므로 @Transactional 은 동작하지 않고 requestTx 의 savepoint 안에서 실행된다.
+    private final MemberServiceV4 memberService;
+    private final TransactionTemplate batchTx;
+    private final TransactionTemplate requestTx;
+
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    private final BlockingQueue<TransferRequest> queue;
+    private final Thread writer;
+
+    // closed 확인과 큐에 넣기를 한 번에 하기 위한 락 -> 닫힌 뒤에는 큐에 아무것도 들어가지 않는다.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private volatile boolean closed;
+
+    /**
+     * @param maxBatchSize 한 트랜잭션에 묶을 최대 요청 수 (큐는 그 16배)
+     * @param maxWait      첫 요청 후 묶음을 더 모으며 기다리는 최대 시간
+     */
+    public BatchingTransferService(MemberRepository memberRepository, PlatformTransactionManager transactionManager,
+                                   int maxBatchSize, Duration maxWait) {
+        if (maxBatchSize <= 0 || maxBatchSize > Integer.MAX_VALUE / QUEUE_SIZE_PER_BATCH) {
+            throw new IllegalArgumentException("maxBatchSize must be between 1 and "
+                    + Integer.MAX_VALUE / QUEUE_SIZE_PER_BATCH + ", maxBatchSize = " + maxBatchSize);
+        }
+        if (maxWait == null || maxWait.isNegative()) {
+            throw new IllegalArgumentException("maxWait must not be negative, maxWait = " + maxWait);
+        }
+        this.memberService = new MemberServiceV4(memberRepository);
+        this.batchTx = new TransactionTemplate(transactionManager);
+        this.requestTx = new TransactionTemplate(transactionManager);
+        this.requestTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED); // 요청마다 savepoint
+
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+
+        // 큐가 가득 차면 호출한 쓰레드가 기다린다. (처리량보다 빨리 쌓이지 않도록)
+        this.queue = new ArrayBlockingQueue<>(maxBatchSize * QUEUE_SIZE_PER_BATCH);
+
+        this.writer = new Thread(this::writeLoop, "transfer-batch-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 계좌이체 요청
+     *
+     * @return 이체가 커밋되면 완료, 실패하면 예외로 완료되는 future (닫힌 뒤에 요청하면 바로 실패로 완료)
+     */
+    public CompletableFuture<Void> accountTransfer(String fromId, String toId, int money) {
+        TransferRequest request = new TransferRequest(fromId, toId, money);
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.completeExceptionally(e);
+            return request.future;
+        }
+        try {
+            // 큐가 가득 차면 쓰기 쓰레드가 꺼내가거나 닫힐 때까지 기다린다.
+            while (!closed && !queue.offer(request)) {
+                notFull.await();
+            }
+            if (closed) {
+                request.future.completeExceptionally(closedException());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+        return request.future;
+    }
+
+    private void writeLoop() {
+        List<TransferRequest> batch = new ArrayList<>(maxBatchSize);
+        Throwable cause = null;
+
+        try {
+            // 닫힌 뒤에는 큐에 더 들어오지 않으므로 남은 요청까지 처리하고 끝난다.
+            while (!closed || !queue.isEmpty()) {
+                TransferRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // 첫 요청부터 maxWait 동안 maxBatchSize 까지 더 모은다.
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TransferRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                signalNotFull();
+
+                process(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cause = e;
+        } catch (Throwable e) {
+            // Error 등으로 멈추더라도 기다리는 호출자가 없도록 아래에서 모두 실패로 완료한다.
+            log.error("transfer batch writer stopped", e);
+            cause = e;
+        } finally {
+            if (cause != null) {
+                shutdown(batch, cause);
+            }
+        }
+    }
+
+    private void signalNotFull() {
+        lock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 더 이상 요청을 받지 않고, 처리 중이던 묶음과 큐에 남은 요청을 모두 실패로 완료한다.
+     * (이미 완료된 future 는 completeExceptionally 해도 바뀌지 않는다)
+     */
+    private void shutdown(List<TransferRequest> batch, Throwable cause) {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        IllegalStateException failure = closedException();
+        failure.initCause(cause);
+        for (TransferRequest request : batch) {
+            request.future.completeExceptionally(failure);
+        }
+        failQueued(failure);
+    }
+
+    private void failQueued(Throwable failure) {
+        TransferRequest request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(failure);
+        }
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("BatchingTransferService is closed");
+    }
+
+    private void process(List<TransferRequest> batch) {
+        try {
+            batchTx.executeWithoutResult(status -> {
+                for (TransferRequest request : batch) {
+                    try {
+                        requestTx.executeWithoutResult(
+                                s -> memberService.accountTransfer(request.fromId, request.toId, request.money));
+                    } catch (RuntimeException e) {
+                        request.failure = e; // savepoint 까지만 롤백, 나머지 요청은 계속
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // 커밋 실패 -> 묶음 전체 실패
+            log.error("batch commit failed, size={}", batch.size(), e);
+            for (TransferRequest request : batch) {
+                request.future.completeExceptionally(request.failure != null ? request.failure : e);
+            }
+            return;
+        }
+
+        for (TransferRequest request : batch) {
+            if (request.failure != null) {
+                request.future.completeExceptionally(request.failure);
+            } else {
+                request.future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 더 이상 요청을 받지 않고, 큐에 남은 요청을 모두 처리한 뒤 쓰기 쓰레드를 멈춘다.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll(); // 큐가 비기를 기다리던 호출자 -> 실패로 완료
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // 쓰기 쓰레드는 남은 요청을 계속 처리한다.
+        }
+
+        // 쓰기 쓰레드가 먼저 멈췄다면 남은 요청이 있을 수 있다.
+        failQueued(closedException());
+    }
+
+    private static class TransferRequest {
+
+        final String fromId;
+        final String toId;
+        final int money;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        RuntimeException failure;
+
+        TransferRequest(String fromId, String toId, int money) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.money = money;
+        }
+    }
+}
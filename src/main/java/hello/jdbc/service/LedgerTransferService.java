@@ -0,0 +1,48 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.LedgerMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 메모리 원장을 사용한 계좌이체
+ *
+ * MemberServiceV3_3 처럼 findById -> update 로 읽고-고치고-쓰기를 하면
+ * 동시에 이체가 들어올 때 값을 잃어버리고(lost update), 어느 방식이든 DB 행 락에서 줄을 선다.
+ * 여기서는 LedgerMemberRepository.transfer 로 두 회원을 함께 잠그고 메모리에서 한 번에 옮긴다.
+ * DB 반영은 원장이 비동기로 한다.
+ *
+ * 메모리 원장은 롤백이 없으므로, 검증은 옮기기 전에 먼저 한다.
+ */
+@Slf4j
+public class LedgerTransferService {
+
+    private final LedgerMemberRepository memberRepository;
+
+    public LedgerTransferService(LedgerMemberRepository memberRepository) {
+        this.memberRepository = memberRepository;
+    }
+
+    /**
+     * 계좌이체 시나리오
+     *
+     * fromId : 돈 보내는 사람
+     * toId : 돈 받는 사람
+     *
+     * @param fromId
+     * @param toId
+     * @param money
+     */
+    public void accountTransfer(String fromId, String toId, int money) {
+
+        // 테스트를 위한 오류 발생시키기 (아무것도 바뀌기 전에 검증)
+        validation(toId);
+
+        memberRepository.transfer(fromId, toId, money);
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) { // 받는 사람의 id가 ex 라면 예외 발생
+            throw new IllegalStateException("이체 중 예외 발생!");
+        }
+    }
+}
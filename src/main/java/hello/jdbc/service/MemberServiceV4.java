@@ -1,6 +1,5 @@
 package hello.jdbc.service;
 
-import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,23 +36,58 @@ public class MemberServiceV4 {
         bizLogic(fromId, toId, money);
     }
 
-    private void bizLogic(String fromId, String toId, int money) {
+    /**
+     * 계좌이체 - 락 순서 고정
+     *
+     * A->B, B->A 이체가 동시에 오면 각자 먼저 수정한 행의 락을 쥔 채 상대 행을 기다려서
+     * 데드락(또는 락 타임아웃)이 생길 수 있다.
+     * 수정하기 전에 두 회원의 행 락을 항상 memberId 순서대로 먼저 잡는다. (select ... for update)
+     *
+     * @param fromId
+     * @param toId
+     * @param money
+     */
+    @Transactional
+    public void accountTransferLockOrdered(String fromId, String toId, int money) {
+        lockInOrder(fromId, toId);
+        bizLogic(fromId, toId, money);
+    }
 
-        Member fromMember = memberRepository.findById(fromId);
-        Member toMember = memberRepository.findById(toId);
+    private void lockInOrder(String fromId, String toId) {
+        String first = fromId.compareTo(toId) <= 0 ? fromId : toId;
+        String second = first.equals(fromId) ? toId : fromId;
 
-        // 돈 보내는 사람의 money 를 파라미터 money 만큼 차감 하고 update
-        memberRepository.update(fromId, fromMember.getMoney() - money);
+        memberRepository.findByIdForUpdate(first);
+        if (!second.equals(first)) {
+            memberRepository.findByIdForUpdate(second);
+        }
+    }
+
+    /**
+     * 조회 없이 두 번의 update 로 이체
+     *
+     * 예전에는 findById x2 -> update x2 (읽고-고치고-쓰기) 였기 때문에
+     * 동시에 이체가 들어오면 다른 트랜잭션이 바꾼 값을 덮어써서 잃어버렸다. (lost update)
+     * 이제는 DB 가 money = money ± ? 로 직접 계산한다.
+     */
+    private void bizLogic(String fromId, String toId, int money) {
+
+        // 돈 보내는 사람의 money 를 파라미터 money 만큼 차감 (잔액이 부족하거나 회원이 없으면 반영 안 됨)
+        if (!memberRepository.withdraw(fromId, money)) {
+            throw new IllegalStateException("출금 실패 - 회원이 없거나 잔액 부족, fromId = " + fromId);
+        }
 
         // 테스트를 위한 오류 발생시키기
-        validation(toMember);
+        validation(toId);
 
-        // 돈 받는 사람의 money 를 파라미터 money 만큼 더하고 update
-        memberRepository.update(toId, toMember.getMoney() + money);
+        // 돈 받는 사람의 money 를 파라미터 money 만큼 더함
+        if (!memberRepository.addMoney(toId, money)) {
+            throw new IllegalStateException("입금 실패 - 회원이 없음, toId = " + toId);
+        }
     }
 
-    private void validation(Member toMember) {
-        if (toMember.getMemberId().equals("ex")) { // 받는 사람의 id가 ex 라면 예외 발생
+    private void validation(String toId) {
+        if (toId.equals("ex")) { // 받는 사람의 id가 ex 라면 예외 발생
             throw new IllegalStateException("이체 중 예외 발생!");
         }
     }
@@ -0,0 +1,161 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 낙관적 락 계좌이체 - 버전으로 충돌을 확인하고, 충돌하면 처음부터 다시 한다.
+ *
+ * MemberServiceV4.accountTransferLockOrdered (비관적 락) 는 조회할 때부터 행 락을 잡고 트랜잭션이 끝날 때까지 놓지 않는다.
+ * 여기서는 락 없이 버전과 함께 조회하고 (findByIdWithVersion),
+ * 수정할 때 버전이 그대로인지 확인한다. (update(memberId, money, version))
+ * 그 사이 다른 트랜잭션이 먼저 수정했으면 OptimisticLockingFailureException -> 트랜잭션을 롤백하고 새 트랜잭션으로 다시 조회부터 한다.
+ *
+ * - 충돌이 드물면 락을 기다리는 시간이 없어서 비관적 락보다 빠르다.
+ * - 충돌이 잦으면 (인기 계좌에 이체가 몰리면) 재시도가 늘어서 비관적 락보다 느려진다. (OptimisticTransferBenchmark)
+ * - 재시도 사이에는 지수적으로 늘어나는 대기 시간 (최대 maxBackoff) 중 무작위로 쉰다. (같이 충돌한 이체들이 다시 동시에 부딪히지 않도록)
+ * - maxAttempts 번 모두 충돌하면 마지막 예외를 그대로 던진다.
+ *
+ * 재시도는 트랜잭션을 새로 시작해야 하므로 다른 트랜잭션 안에서 호출하면 안 된다.
+ */
+@Slf4j
+public class OptimisticTransferService {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+    public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofNanos(50_000); // 50us
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMillis(10);
+
+    private final TransactionTemplate txTemplate;
+    private final MemberRepository memberRepository;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder giveUpCount = new LongAdder();
+
+    public OptimisticTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository) {
+        this(transactionManager, memberRepository, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * @param maxAttempts 처음 시도를 포함한 최대 시도 횟수
+     * @param baseBackoff 첫 재시도 전 최대 대기 시간 - 재시도마다 두 배
+     * @param maxBackoff  대기 시간 상한
+     */
+    public OptimisticTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                                     int maxAttempts, Duration baseBackoff, Duration maxBackoff) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive, maxAttempts = " + maxAttempts);
+        }
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.memberRepository = memberRepository;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    /**
+     * 계좌이체 시나리오
+     *
+     * fromId : 돈 보내는 사람
+     * toId : 돈 받는 사람
+     *
+     * @param fromId
+     * @param toId
+     * @param money
+     */
+    public void accountTransfer(String fromId, String toId, int money) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                txTemplate.executeWithoutResult(status -> bizLogic(fromId, toId, money));
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    giveUpCount.increment();
+                    log.warn("transfer gave up after {} attempts fromId={}, toId={}", attempt, fromId, toId);
+                    throw e;
+                }
+                retryCount.increment();
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    /**
+     * @return 충돌해서 다시 시도한 횟수
+     */
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    /**
+     * @return maxAttempts 번 모두 충돌해서 실패한 이체 수
+     */
+    public long getGiveUpCount() {
+        return giveUpCount.sum();
+    }
+
+    private void bizLogic(String fromId, String toId, int money) {
+
+        Member fromMember = memberRepository.findByIdWithVersion(fromId);
+
+        if (fromMember.getMoney() < money) {
+            throw new IllegalStateException("출금 실패 - 잔액 부족, fromId = " + fromId);
+        }
+
+        // 자기 자신에게 이체 - 합계가 그대로이므로 수정하지 않는다. (두 번째 update 가 첫 번째 update 가 올린 버전과 항상 충돌한다)
+        // MemberServiceV4 처럼 잔액과 검증은 똑같이 확인한다.
+        if (fromId.equals(toId)) {
+            validation(fromMember);
+            return;
+        }
+
+        Member toMember = memberRepository.findByIdWithVersion(toId);
+
+        // 수정하는 동안은 행 락이 걸리므로 memberId 순서로 수정한다. (A->B, B->A 동시 이체의 데드락 방지)
+        if (fromId.compareTo(toId) <= 0) {
+            memberRepository.update(fromId, fromMember.getMoney() - money, fromMember.getVersion());
+            validation(toMember); // 테스트를 위한 오류 발생시키기
+            memberRepository.update(toId, toMember.getMoney() + money, toMember.getVersion());
+        } else {
+            memberRepository.update(toId, toMember.getMoney() + money, toMember.getVersion());
+            validation(toMember);
+            memberRepository.update(fromId, fromMember.getMoney() - money, fromMember.getVersion());
+        }
+    }
+
+    private void validation(Member toMember) {
+        if (toMember.getMemberId().equals("ex")) { // 받는 사람의 id가 ex 라면 예외 발생
+            throw new IllegalStateException("이체 중 예외 발생!");
+        }
+    }
+
+    /**
+     * 0 ~ min(maxBackoff, baseBackoff * 2^(attempt-1)) 사이에서 무작위로 쉰다. (full jitter)
+     */
+    private void backoff(int attempt, OptimisticLockingFailureException cause) {
+        long ceiling = baseBackoffNanos << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffNanos) {
+            ceiling = maxBackoffNanos;
+        }
+        if (ceiling <= 0) {
+            return;
+        }
+
+        // Thread.sleep 은 ms 단위로 반올림되므로 parkNanos 사용
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(ceiling));
+        if (Thread.currentThread().isInterrupted()) {
+            throw cause; // 인터럽트되면 더 기다리지 않는다. (인터럽트 상태는 유지)
+        }
+    }
+}
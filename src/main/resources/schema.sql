@@ -0,0 +1,9 @@
+create table if not exists member (
+    member_id varchar(10),
+    money integer not null default 0,
+    version bigint not null default 0,
+    primary key (member_id)
+);
+
+-- 낙관적 락 버전 컬럼이 없던 예전 테이블 (외부 H2 의 ~/jdbc 도 한 번 실행해 둔다)
+alter table member add column if not exists version bigint not null default 0;
@@ -0,0 +1,76 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class ConnectionPoolWarmUpTest {
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void before() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(10);
+        dataSource.setMinimumIdle(5);
+        dataSource.setPoolName("WarmUpPool");
+    }
+
+    @AfterEach
+    void after() {
+        dataSource.close();
+    }
+
+    @Test
+    void warmUp() {
+        ConnectionPoolWarmUp warmUp = new ConnectionPoolWarmUp(dataSource);
+
+        int warmed = warmUp.warmUp();
+
+        // Thread.sleep 없이 바로 minimumIdle 개의 커넥션이 풀에 들어있다.
+        log.info("warmed={}, duration={}", warmed, warmUp.getWarmUpDuration());
+        assertThat(warmed).isEqualTo(5);
+        assertThat(dataSource.getHikariPoolMXBean().getTotalConnections()).isGreaterThanOrEqualTo(5);
+        assertThat(dataSource.getHikariPoolMXBean().getIdleConnections()).isGreaterThanOrEqualTo(5);
+        assertThat(warmUp.getWarmUpDuration()).isNotNull();
+        assertThat(warmUp.getFailedSql()).isEmpty();
+    }
+
+    @Test
+    void warmUpPrimesAllSqlOnOldSchema() {
+        // version 컬럼이 없는 예전 member 테이블
+        dataSource.setJdbcUrl("jdbc:h2:mem:warmup_old;DB_CLOSE_DELAY=-1;INIT=" +
+                "create table if not exists member (member_id varchar(10), money integer not null default 0, primary key (member_id))");
+        ConnectionPoolWarmUp warmUp = new ConnectionPoolWarmUp(dataSource);
+
+        int warmed = warmUp.warmUp();
+
+        // 첫 실패에서 멈추지 않고 버전을 쓰는 SQL 만 실패로 남는다.
+        assertThat(warmed).isEqualTo(5);
+        assertThat(warmUp.getFailedSql()).isNotEmpty().allMatch(sql -> sql.contains("version"));
+        assertThat(warmUp.getFailedSql()).hasSize(
+                (int) Arrays.stream(ConnectionPoolWarmUp.MEMBER_SQL).filter(sql -> sql.contains("version")).count());
+    }
+
+    @Test
+    void warmUpFailsOnBadDatabase() {
+        dataSource.setPassword("wrong");
+        dataSource.setConnectionTimeout(250);
+        ConnectionPoolWarmUp warmUp = new ConnectionPoolWarmUp(dataSource);
+
+        assertThatThrownBy(warmUp::warmUp).isInstanceOf(RuntimeException.class);
+        assertThat(warmUp.getWarmUpDuration()).isNull();
+    }
+}
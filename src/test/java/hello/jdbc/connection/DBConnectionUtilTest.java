@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -19,4 +20,26 @@ class DBConnectionUtilTest {
         // 커넥션이 null이 아니면 success
         assertThat(connection).isNotNull();
     }
+
+    @Test
+    void pooledConnection() throws SQLException {
+        DBConnectionUtil.setPooled(true);
+        try {
+            // close() 하면 풀에 반납 -> 다음 getConnection() 때 같은 물리 커넥션을 다시 꺼내온다.
+            Connection con1 = DBConnectionUtil.getConnection();
+            Connection physical1 = con1.unwrap(Connection.class);
+            con1.close();
+
+            Connection con2 = DBConnectionUtil.getConnection();
+            Connection physical2 = con2.unwrap(Connection.class);
+            con2.close();
+
+            log.info("physical1={}, physical2={}", physical1, physical2);
+            assertThat(physical1.isClosed()).isFalse();
+            assertThat(physical2).isSameAs(physical1);
+        } finally {
+            DBConnectionUtil.setPooled(false);
+            DBConnectionUtil.closePool();
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package hello.jdbc.connection;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import javax.sql.DataSource;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+/**
+ * 테스트 클래스마다 따로 쓰는 스키마
+ *
+ * 서비스 테스트들은 모두 memberA, memberB, ex 를 쓴다. 같은 member 테이블을 쓰면 동시에 실행할 수 없다.
+ * 테스트 클래스 이름으로 스키마를 만들어 (ex: T_MEMBERSERVICEV1TEST) 클래스끼리 데이터가 겹치지 않게 한다.
+ * 이런 클래스는 @Execution(CONCURRENT) 로 다른 클래스와 동시에 실행한다. (junit-platform.properties)
+ *
+ * 정리는 delete 대신 truncate - 테스트가 만든 id 를 몰라도 되고, 서비스가 커밋한 데이터도 지운다.
+ */
+public abstract class IsolatedSchema {
+
+    public static String schemaOf(Class<?> testClass) {
+        return "T_" + testClass.getSimpleName().toUpperCase();
+    }
+
+    public static String url(Class<?> testClass) {
+        return schemaUrl(schemaOf(testClass));
+    }
+
+    public static DriverManagerDataSource dataSource(Class<?> testClass) {
+        return new DriverManagerDataSource(url(testClass), USERNAME, PASSWORD);
+    }
+
+    /**
+     * 스프링 부트 테스트 - 자동 등록되는 DataSource 가 이 스키마를 쓰게 한다. (@DynamicPropertySource 에서 호출)
+     */
+    public static void register(DynamicPropertyRegistry registry, Class<?> testClass) {
+        registry.add("spring.datasource.url", () -> url(testClass));
+        registry.add("spring.datasource.username", () -> USERNAME);
+        registry.add("spring.datasource.password", () -> PASSWORD);
+    }
+
+    public static void truncate(DataSource dataSource) {
+        new JdbcTemplate(dataSource).execute("truncate table member");
+    }
+}
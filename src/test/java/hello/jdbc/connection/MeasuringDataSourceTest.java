@@ -0,0 +1,91 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MeasuringDataSourceTest {
+
+    public static final String MEMBER_A = "memberA";
+
+    HikariDataSource hikari;
+    MeasuringDataSource dataSource;
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        hikari = new HikariDataSource();
+        hikari.setJdbcUrl(URL);
+        hikari.setUsername(USERNAME);
+        hikari.setPassword(PASSWORD);
+        hikari.setMaximumPoolSize(2);
+
+        dataSource = new MeasuringDataSource(hikari);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        memberRepository.delete(MEMBER_A);
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        dataSource.close();
+        hikari.close();
+    }
+
+    @Test
+    void recordPerSql() throws InterruptedException {
+        dataSource.startLogging(Duration.ofMillis(100));
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        for (int i = 0; i < 10; i++) {
+            memberRepository.findById(MEMBER_A);
+        }
+        memberRepository.update(MEMBER_A, 20000);
+        assertThatThrownBy(() -> memberRepository.save(new Member(MEMBER_A, 10000)))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        SqlStats insert = dataSource.getStats("insert into member(member_id, money) values (?, ?)");
+        assertThat(insert.getLatency().getCount()).isEqualTo(2);
+        assertThat(insert.getRows()).isEqualTo(1);
+        assertThat(insert.getErrors()).containsEntry("DuplicateKeyException", 1L);
+
+        SqlStats select = dataSource.getStats("select member_id, money from member where member_id = ?");
+        assertThat(select.getLatency().getCount()).isEqualTo(10);
+        assertThat(select.getErrorCount()).isZero();
+
+        SqlStats update = dataSource.getStats("update member set money = ?, version = version + 1 where member_id = ?");
+        assertThat(update.getRows()).isEqualTo(1);
+
+        assertThat(dataSource.getAcquireLatency().getCount()).isGreaterThanOrEqualTo(14);
+        Thread.sleep(300); // 로그 확인용
+    }
+
+    @Test
+    void histogramPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        // 칸 하나의 폭이 12.5% 이내
+        assertThat(histogram.getValueAtPercentile(50, TimeUnit.MICROSECONDS)).isBetween(500L, 563L);
+        assertThat(histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS)).isBetween(990L, 1000L);
+        assertThat(histogram.getValueAtPercentile(100, TimeUnit.MICROSECONDS)).isEqualTo(1000L);
+        assertThat(histogram.getMax(TimeUnit.MICROSECONDS)).isEqualTo(1000L);
+        assertThat(histogram.getMeanMicros()).isEqualTo(500.5);
+    }
+}
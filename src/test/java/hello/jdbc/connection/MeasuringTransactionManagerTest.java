@@ -0,0 +1,114 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_2;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MeasuringTransactionManagerTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    MemberRepositoryV3 memberRepository;
+    MeasuringTransactionManager transactionManager;
+    MemberServiceV3_2 memberService;
+
+    @BeforeEach
+    void before() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV3(dataSource);
+        transactionManager = new MeasuringTransactionManager(new DataSourceTransactionManager(dataSource));
+        memberService = new MemberServiceV3_2(transactionManager, memberRepository);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    void commitAndRollback() throws SQLException {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        log.info("begin p50={}us, hold p50={}us, duration max={}us",
+                transactionManager.getBeginLatency().getValueAtPercentile(50, TimeUnit.MICROSECONDS),
+                transactionManager.getConnectionHoldTime().getValueAtPercentile(50, TimeUnit.MICROSECONDS),
+                transactionManager.getDuration().getMax(TimeUnit.MICROSECONDS));
+
+        assertThat(transactionManager.getBeginCount()).isEqualTo(2);
+        assertThat(transactionManager.getCommitCount()).isEqualTo(1);
+        assertThat(transactionManager.getRollbackCount()).isEqualTo(1);
+        assertThat(transactionManager.getRollbackCauses()).containsEntry(MeasuringTransactionManager.CAUSE_ROLLBACK, 1L);
+        assertThat(transactionManager.getDuration().getCount()).isEqualTo(2);
+        assertThat(transactionManager.getConnectionHoldTime().getCount()).isEqualTo(2);
+        assertThat(transactionManager.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void participatingRollback() {
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        TransactionTemplate inner = new TransactionTemplate(transactionManager);
+
+        // 내부 트랜잭션(참여) 롤백 -> 바깥 트랜잭션은 rollback-only 가 되어 커밋 시 롤백된다.
+        assertThatThrownBy(() -> outer.executeWithoutResult(status -> {
+            try {
+                inner.executeWithoutResult(s -> {
+                    throw new IllegalStateException("inner");
+                });
+            } catch (IllegalStateException ignored) {
+            }
+        })).isInstanceOf(UnexpectedRollbackException.class);
+
+        assertThat(transactionManager.getRollbackCauses())
+                .containsEntry(MeasuringTransactionManager.CAUSE_PARTICIPATING, 1L)
+                .containsEntry(MeasuringTransactionManager.CAUSE_ROLLBACK_ONLY, 1L);
+        assertThat(transactionManager.getRollbackCount()).isEqualTo(1);
+        assertThat(transactionManager.getCommitCount()).isZero();
+    }
+
+    @Test
+    void savepointRollback() {
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        TransactionTemplate nested = new TransactionTemplate(transactionManager);
+        nested.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+
+        outer.executeWithoutResult(status -> {
+            try {
+                nested.executeWithoutResult(s -> {
+                    throw new IllegalStateException("nested");
+                });
+            } catch (IllegalStateException ignored) {
+            }
+        });
+
+        assertThat(transactionManager.getRollbackCauses()).containsEntry(MeasuringTransactionManager.CAUSE_SAVEPOINT, 1L);
+        assertThat(transactionManager.getCommitCount()).isEqualTo(1);
+        assertThat(transactionManager.getRollbackCount()).isZero();
+    }
+}
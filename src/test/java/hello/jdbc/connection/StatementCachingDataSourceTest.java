@@ -0,0 +1,85 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class StatementCachingDataSourceTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    HikariDataSource hikari;
+    StatementCachingDataSource dataSource;
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        hikari = new HikariDataSource();
+        hikari.setJdbcUrl(URL);
+        hikari.setUsername(USERNAME);
+        hikari.setPassword(PASSWORD);
+        hikari.setMaximumPoolSize(2);
+
+        dataSource = new StatementCachingDataSource(hikari, 16);
+        memberRepository = new MemberRepositoryV4_2(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+        hikari.close();
+    }
+
+    @Test
+    void reuseStatement() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        }
+
+        log.info("hit={}, miss={}", dataSource.getHitCount(), dataSource.getMissCount());
+        // 풀에 커넥션이 최대 2개 -> 커넥션마다 처음 한 번씩만 새로 만든다.
+        assertThat(dataSource.getMissCount()).isLessThanOrEqualTo(2 * 2); // insert, select
+        assertThat(dataSource.getHitCount()).isGreaterThanOrEqualTo(8);
+    }
+
+    @Test
+    void transaction() {
+
+        // given - 트랜잭션 매니저도 캐시 DataSource 를 사용 (DataSourceUtils 로 같은 커넥션을 꺼낸다)
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        MemberServiceV4 memberService = new MemberServiceV4(memberRepository);
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        // when
+        txTemplate.executeWithoutResult(status -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000));
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000)))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then - 커밋은 반영, 롤백은 되돌려짐
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+}
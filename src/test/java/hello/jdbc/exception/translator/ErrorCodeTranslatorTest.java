@@ -0,0 +1,93 @@
+package hello.jdbc.exception.translator;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.ErrorCodeTranslator;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+public class ErrorCodeTranslatorTest {
+
+    DataSource dataSource;
+    ErrorCodeTranslator exTranslator = ErrorCodeTranslator.h2();
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+    }
+
+    @AfterEach
+    void after() {
+        new MemberRepositoryV4_2(dataSource).delete("dupKey");
+    }
+
+    @Test
+    void sameAsSpringTranslator() {
+        SQLErrorCodeSQLExceptionTranslator springTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+
+        SQLException[] exceptions = {
+                new SQLException("duplicate", "23505", 23505),
+                new SQLException("bad grammar", "42S22", 42122),
+                new SQLException("null", "23502", 23502),
+                new SQLException("lock timeout", "HYT00", 50200),
+                new SQLException("deadlock", "40001", 40001), // 코드 표에 없음 -> SQLState 로 분류
+        };
+
+        for (SQLException e : exceptions) {
+            DataAccessException expected = springTranslator.translate("task", "sql", e);
+            DataAccessException actual = exTranslator.translate("task", "sql", e);
+
+            log.info("code={}, spring={}, fast={}", e.getErrorCode(), expected.getClass().getSimpleName(), actual.getClass().getSimpleName());
+            assertThat(actual).isInstanceOf(expected.getClass());
+            assertThat(actual.getMessage()).isEqualTo(expected.getMessage());
+            assertThat(actual.getCause()).isSameAs(e);
+        }
+    }
+
+    @Test
+    void fallback() {
+        assertThat(exTranslator.translate("task", "sql", new SQLException("x", "40001", 1)))
+                .isInstanceOf(ConcurrencyFailureException.class);
+        assertThat(exTranslator.translate("task", "sql", new SQLException("x", "42000", 1)))
+                .isInstanceOf(BadSqlGrammarException.class);
+        assertThat(exTranslator.translate("task", "sql", new SQLException("x", "XX000", 1)))
+                .isInstanceOf(UncategorizedSQLException.class);
+    }
+
+    @Test
+    void customVendor() {
+        ErrorCodeTranslator mysql = ErrorCodeTranslator.builder()
+                .map(ErrorCodeTranslator.Category.DUPLICATE_KEY, 1062)
+                .build();
+
+        assertThat(mysql.translate("task", "sql", new SQLException("dup", "23000", 1062)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void repository() {
+        MemberRepository repository = new MemberRepositoryV4_2(dataSource, exTranslator);
+        repository.save(new Member("dupKey", 0));
+
+        assertThatThrownBy(() -> repository.save(new Member("dupKey", 0)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+}
@@ -0,0 +1,33 @@
+package hello.jdbc.exception.translator;
+
+import hello.jdbc.repository.ex.MyDbException;
+import hello.jdbc.repository.ex.MyDuplicateKeyException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+public class StacklessExceptionTest {
+
+    @Test
+    void stackless() {
+        SQLException cause = new SQLException("duplicate", "23505", 23505);
+
+        MyDuplicateKeyException e = MyDuplicateKeyException.stackless(cause);
+        log.info("stackless", e);
+
+        assertThat(e.getStackTrace()).isEmpty(); // 스택 트레이스 없음
+        assertThat(e.getCause()).isSameAs(cause); // 원인은 유지
+        assertThat(e).isInstanceOf(MyDbException.class);
+    }
+
+    @Test
+    void normal() {
+        MyDuplicateKeyException e = new MyDuplicateKeyException(new SQLException("duplicate", "23505", 23505));
+
+        assertThat(e.getStackTrace()).isNotEmpty();
+    }
+}
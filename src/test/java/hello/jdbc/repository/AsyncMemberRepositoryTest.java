@@ -0,0 +1,111 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class AsyncMemberRepositoryTest {
+
+    private static final int SIZE = 20;
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    AsyncMemberRepository asyncRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(4);
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        asyncRepository = new AsyncMemberRepository(memberRepository, dataSource, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void afterEach() {
+        asyncRepository.close();
+        for (int i = 0; i < SIZE; i++) {
+            memberRepository.delete("async" + i);
+        }
+        dataSource.close();
+    }
+
+    @Test
+    void fanOut() throws ExecutionException, InterruptedException {
+        for (int i = 0; i < SIZE; i++) {
+            memberRepository.save(new Member("async" + i, i * 100));
+        }
+
+        // 한 번에 SIZE 개를 보내고 모두 끝날 때까지 기다린다.
+        List<CompletableFuture<Member>> futures = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            futures.add(asyncRepository.findById("async" + i));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+
+        for (int i = 0; i < SIZE; i++) {
+            assertThat(futures.get(i).get().getMoney()).isEqualTo(i * 100);
+        }
+        assertThat(asyncRepository.getMaxInFlight()).isEqualTo(8); // 풀 크기 4 * 2
+    }
+
+    @Test
+    void failedLookup() {
+        CompletableFuture<Member> future = asyncRepository.findById("none");
+
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class);
+        assertThat(future.isCompletedExceptionally()).isTrue();
+    }
+
+    @Test
+    void backPressure() throws ExecutionException, InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        MemberRepository slowRepository = (MemberRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MemberRepository.class}, (proxy, method, args) -> {
+                    latch.await();
+                    return new Member((String) args[0], 0);
+                });
+
+        // 풀 크기 1 -> 동시에 2개까지
+        AsyncMemberRepository limited = new AsyncMemberRepository(slowRepository, 1, Duration.ofMillis(50));
+        try {
+            CompletableFuture<Member> first = limited.findById("a");
+            CompletableFuture<Member> second = limited.findById("b");
+            CompletableFuture<Member> third = limited.findById("c");
+
+            assertThat(limited.getInFlightCount()).isEqualTo(2);
+            assertThatThrownBy(third::get).hasCauseInstanceOf(RejectedExecutionException.class);
+
+            // 취소해도 작업은 아직 실행 중 -> 자리를 돌려주지 않는다.
+            first.cancel(true);
+            assertThat(limited.getInFlightCount()).isEqualTo(2);
+            assertThatThrownBy(() -> limited.findById("d").get()).hasCauseInstanceOf(RejectedExecutionException.class);
+
+            latch.countDown();
+            assertThat(second.get().getMemberId()).isEqualTo("b");
+        } finally {
+            latch.countDown();
+            limited.close();
+        }
+    }
+}
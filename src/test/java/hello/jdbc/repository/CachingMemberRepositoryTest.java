@@ -0,0 +1,218 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 조회 캐시 - MemberServiceV4 의 @Transactional 과 함께 사용
+ */
+@Slf4j
+@SpringBootTest
+class CachingMemberRepositoryTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    @Autowired
+    private CachingMemberRepository memberRepository;
+
+    @Autowired
+    private MemberServiceV4 memberService;
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        CachingMemberRepository memberRepository() {
+            return new CachingMemberRepository(new MemberRepositoryV5(dataSource), 1000, Duration.ofMinutes(1));
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    void cacheHit() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+
+        memberRepository.findById(MEMBER_A); // miss -> 캐시에 넣음
+        long hit = memberRepository.getHitCount();
+
+        Member findMember = memberRepository.findById(MEMBER_A);
+
+        assertThat(findMember.getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.getHitCount()).isEqualTo(hit + 1);
+    }
+
+    @Test
+    @DisplayName("정상 이체 - 커밋 후 캐시에 예전 잔액이 남지 않는다")
+    void accountTransfer() {
+
+        // given - 두 회원 모두 캐시에 올려둠
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.findById(MEMBER_A);
+        memberRepository.findById(MEMBER_B);
+
+        // when
+        memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    @DisplayName("이체 중 예외 발생 - 롤백된 값은 캐시에 남지 않는다")
+    void accountTransferEx() {
+
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        // when - memberA 를 8000 으로 수정한 뒤 롤백
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("최대 크기를 넘으면 오래 안 쓴 회원부터 버린다")
+    void eviction() {
+        CachingMemberRepository repository = new CachingMemberRepository(new MemoryMemberRepository(), 16, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 100; i++) {
+            repository.save(new Member("m" + i, i));
+            repository.findById("m" + i);
+        }
+
+        assertThat(repository.size()).isLessThanOrEqualTo(16);
+        assertThat(repository.getEvictionCount()).isGreaterThanOrEqualTo(100 - 16);
+    }
+
+    @Test
+    @DisplayName("만료 시간이 지나면 원본에서 다시 조회한다")
+    void expire() throws InterruptedException {
+        CachingMemberRepository repository = new CachingMemberRepository(new MemoryMemberRepository(), 16, Duration.ofMillis(100));
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.findById(MEMBER_A);
+
+        Thread.sleep(200);
+
+        long miss = repository.getMissCount();
+        repository.findById(MEMBER_A);
+
+        assertThat(repository.getMissCount()).isEqualTo(miss + 1);
+        assertThat(repository.getEvictionCount()).isEqualTo(1);
+    }
+
+    /**
+     * 캐시 동작만 확인하기 위한 메모리 리포지토리
+     */
+    static class MemoryMemberRepository implements MemberRepository {
+
+        private final Map<String, Integer> store = new ConcurrentHashMap<>();
+
+        @Override
+        public Member save(Member member) {
+            store.put(member.getMemberId(), member.getMoney());
+            return member;
+        }
+
+        @Override
+        public Member findById(String memberId) {
+            Integer money = store.get(memberId);
+            if (money == null) {
+                throw new NoSuchElementException("member not found memberId = " + memberId);
+            }
+            return new Member(memberId, money);
+        }
+
+        @Override
+        public Member findByIdForUpdate(String memberId) {
+            return findById(memberId);
+        }
+
+        @Override
+        public void streamAll(Consumer<Member> action, int fetchSize) {
+            store.forEach((memberId, money) -> action.accept(new Member(memberId, money)));
+        }
+
+        @Override
+        public void update(String memberId, int money) {
+            store.put(memberId, money);
+        }
+
+        // 버전 대신 조회한 잔액으로 비교한다.
+        @Override
+        public Member findByIdWithVersion(String memberId) {
+            Member member = findById(memberId);
+            return new Member(memberId, member.getMoney(), member.getMoney());
+        }
+
+        @Override
+        public void update(String memberId, int money, long version) {
+            if (!store.replace(memberId, (int) version, money)) {
+                throw new OptimisticLockingFailureException("member was updated memberId = " + memberId);
+            }
+        }
+
+        @Override
+        public void delete(String memberId) {
+            store.remove(memberId);
+        }
+
+        @Override
+        public boolean addMoney(String memberId, int delta) {
+            return store.computeIfPresent(memberId, (id, money) -> money + delta) != null;
+        }
+
+        @Override
+        public boolean withdraw(String memberId, int amount) {
+            boolean[] applied = {false};
+            store.computeIfPresent(memberId, (id, money) -> {
+                applied[0] = money >= amount;
+                return applied[0] ? money - amount : money;
+            });
+            return applied[0];
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.service.LedgerTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 메모리 원장 - 동시 이체, DB 반영
+ */
+@Slf4j
+class LedgerMemberRepositoryTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+    MemberRepository dbRepository = new MemberRepositoryV5(dataSource);
+
+    LedgerMemberRepository ledger;
+    LedgerTransferService service;
+
+    @BeforeEach
+    void before() {
+        dbRepository.save(new Member(MEMBER_A, 10000));
+        dbRepository.save(new Member(MEMBER_B, 10000));
+
+        ledger = new LedgerMemberRepository(dataSource, Duration.ofMillis(50));
+        service = new LedgerTransferService(ledger);
+    }
+
+    @AfterEach
+    void after() {
+        ledger.close();
+        dbRepository.delete(MEMBER_A);
+        dbRepository.delete(MEMBER_B);
+        dbRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    void concurrentTransfer() throws Exception {
+
+        // given - A->B, B->A 이체를 동시에
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            boolean aToB = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    if (aToB) {
+                        service.accountTransfer(MEMBER_A, MEMBER_B, 1);
+                    } else {
+                        service.accountTransfer(MEMBER_B, MEMBER_A, 1);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // then - 같은 횟수만큼 주고받았으므로 원래대로, 잃어버린 이체 없음
+        assertThat(ledger.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(ledger.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void flush() {
+
+        // when
+        service.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+        ledger.save(new Member(MEMBER_EX, 500));
+        ledger.flush();
+
+        // then - DB 에 반영됨
+        assertThat(dbRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(dbRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+        assertThat(dbRepository.findById(MEMBER_EX).getMoney()).isEqualTo(500);
+
+        // 지운 회원도 반영
+        ledger.delete(MEMBER_EX);
+        ledger.flush();
+        assertThat(dbRepository.findAllById(List.of(MEMBER_EX))).isEmpty();
+    }
+
+    @Test
+    void transferEx() {
+        ledger.save(new Member(MEMBER_EX, 10000));
+
+        // 검증 실패 -> 아무것도 바뀌지 않음
+        assertThatThrownBy(() -> service.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+        // 없는 회원 -> 아무것도 바뀌지 않음
+        assertThatThrownBy(() -> service.accountTransfer(MEMBER_A, "none", 2000))
+                .isInstanceOf(NoSuchElementException.class);
+
+        assertThat(ledger.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void versionedUpdate() {
+        Member findMember = ledger.findByIdWithVersion(MEMBER_A);
+
+        // 트랜잭션 밖 - 한 회원만 바로 바꾼다.
+        ledger.update(MEMBER_A, findMember.getMoney() - 1000, findMember.getVersion());
+        assertThat(ledger.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+        assertThatThrownBy(() -> ledger.update(MEMBER_A, 0, findMember.getVersion()))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        // 트랜잭션 안 - 롤백해도 되돌릴 수 없으므로 거절
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        Member findMemberB = ledger.findByIdWithVersion(MEMBER_B);
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(
+                status -> ledger.update(MEMBER_B, findMemberB.getMoney() + 1000, findMemberB.getVersion())))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class);
+        assertThat(ledger.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void balanceTable() {
+
+        // 여러 번 늘어나고(resize) 지워져도 (backward shift) 모든 회원을 찾을 수 있어야 한다.
+        BalanceTable table = new BalanceTable();
+        int size = 20000;
+
+        for (int i = 0; i < size; i++) {
+            assertThat(table.insert("m" + i, i)).isTrue();
+        }
+        for (int i = 0; i < size; i += 3) {
+            assertThat(table.remove("m" + i)).isTrue();
+        }
+
+        for (int i = 0; i < size; i++) {
+            assertThat(table.contains("m" + i)).isEqualTo(i % 3 != 0);
+            if (i % 3 != 0) {
+                assertThat(table.get("m" + i)).isEqualTo(i);
+            }
+        }
+
+        BalanceTable.Journal journal = table.drain();
+        assertThat(journal.removedIds).hasSize((size + 2) / 3);
+        assertThat(journal.changedIds).hasSize(size - (size + 2) / 3);
+        assertThat(table.drain().isEmpty()).isTrue();
+    }
+}
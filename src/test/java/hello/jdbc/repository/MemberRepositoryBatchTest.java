@@ -0,0 +1,118 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * saveAll - 배치 저장
+ * findAllById - in 절 묶음 조회
+ */
+@Slf4j
+class MemberRepositoryBatchTest {
+
+    private static final int SIZE = 70; // in 절 최대 크기(64)를 넘도록
+
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+    @AfterEach
+    void after() {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        for (int i = 0; i < SIZE; i++) {
+            repository.delete(memberId(i));
+        }
+    }
+
+    @Test
+    void saveAllV4_2() {
+        saveAllWithDuplicate(new MemberRepositoryV4_2(dataSource));
+    }
+
+    @Test
+    void saveAllV5() {
+        saveAllWithDuplicate(new MemberRepositoryV5(dataSource));
+    }
+
+    @Test
+    void saveAllDefault() {
+        saveAllWithDuplicate(new MemberRepositoryV4_1(dataSource));
+    }
+
+    @Test
+    void findAllByIdV4_2() {
+        findAll(new MemberRepositoryV4_2(dataSource));
+    }
+
+    @Test
+    void findAllByIdV5() {
+        findAll(new MemberRepositoryV5(dataSource));
+    }
+
+    @Test
+    void findAllByIdDefault() {
+        findAll(new MemberRepositoryV4_1(dataSource));
+    }
+
+    private void findAll(MemberRepository repository) {
+
+        // given
+        List<String> memberIds = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            repository.save(new Member(memberId(i), i));
+            memberIds.add(memberId(i));
+        }
+        memberIds.add(memberId(0)); // 중복 id
+        memberIds.add("none"); // 없는 id
+
+        // when
+        Map<String, Member> result = repository.findAllById(memberIds);
+
+        // then
+        assertThat(result).hasSize(SIZE);
+        assertThat(result).doesNotContainKey("none");
+        assertThat(result.get(memberId(69)).getMoney()).isEqualTo(69);
+    }
+
+    private void saveAllWithDuplicate(MemberRepository repository) {
+
+        // given - 중간에 이미 있는 회원이 끼어있음
+        repository.save(new Member(memberId(5), 0));
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            members.add(new Member(memberId(i), 10000));
+        }
+
+        // when - 4건씩 나눠서 저장
+        BatchSaveResult result = repository.saveAll(members, 4);
+
+        // then - 중복 한 건만 실패하고 나머지는 모두 저장
+        assertThat(result.getSavedCount()).isEqualTo(SIZE - 1);
+        assertThat(result.getFailures()).hasSize(1);
+
+        BatchSaveResult.Failure failure = result.getFailures().get(0);
+        log.info("failure member={}", failure.getMember(), failure.getException());
+        assertThat(failure.getMember().getMemberId()).isEqualTo(memberId(5));
+
+        if (!(repository instanceof MemberRepositoryV4_1)) { // V4_1 은 MyDbException 으로 감싼다.
+            assertThat(failure.getException()).isInstanceOf(DuplicateKeyException.class);
+        }
+
+        assertThat(repository.findById(memberId(9)).getMoney()).isEqualTo(10000);
+        assertThat(repository.findById(memberId(5)).getMoney()).isEqualTo(0);
+    }
+
+    private String memberId(int i) {
+        return "batch" + i;
+    }
+}
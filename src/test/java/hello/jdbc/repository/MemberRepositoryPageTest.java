@@ -0,0 +1,80 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * findPage - keyset 페이징
+ */
+@Slf4j
+class MemberRepositoryPageTest {
+
+    private static final int SIZE = 25;
+    private static final int LIMIT = 10;
+
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+    @BeforeEach
+    void before() {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            members.add(new Member(memberId(i), i));
+        }
+        new MemberRepositoryV5(dataSource).saveAll(members);
+    }
+
+    @AfterEach
+    void after() {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        for (int i = 0; i < SIZE; i++) {
+            repository.delete(memberId(i));
+        }
+    }
+
+    @Test
+    void findPageV4_2() {
+        findPages(new MemberRepositoryV4_2(dataSource));
+    }
+
+    @Test
+    void findPageV5() {
+        findPages(new MemberRepositoryV5(dataSource));
+    }
+
+    @Test
+    void findPageDefault() {
+        findPages(new MemberRepositoryV4_1(dataSource));
+    }
+
+    private void findPages(MemberRepository repository) {
+        // 다른 테스트가 남긴 회원이 있을 수 있으므로 "page" 바로 앞에서 시작한다.
+        String after = "pagd~";
+        List<Member> all = new ArrayList<>();
+
+        while (all.size() < SIZE) {
+            List<Member> page = repository.findPage(after, LIMIT);
+            assertThat(page).hasSizeLessThanOrEqualTo(LIMIT).isNotEmpty();
+
+            all.addAll(page);
+            after = page.get(page.size() - 1).getMemberId();
+        }
+
+        for (int i = 0; i < SIZE; i++) {
+            assertThat(all.get(i).getMemberId()).isEqualTo(memberId(i)); // member_id 순서, 중복 없음
+        }
+    }
+
+    private static String memberId(int i) {
+        return String.format("page%02d", i);
+    }
+}
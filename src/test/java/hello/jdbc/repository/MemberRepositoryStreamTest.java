@@ -0,0 +1,79 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * streamAll - 전체 회원 커서 조회
+ */
+@Slf4j
+class MemberRepositoryStreamTest {
+
+    private static final int SIZE = 70;
+    private static final int FETCH_SIZE = 8; // SIZE 보다 작게 -> 여러 번 나누어 가져온다.
+
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+    @BeforeEach
+    void before() {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            members.add(new Member(memberId(i), i));
+        }
+        new MemberRepositoryV5(dataSource).saveAll(members);
+    }
+
+    @AfterEach
+    void after() {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        for (int i = 0; i < SIZE; i++) {
+            repository.delete(memberId(i));
+        }
+    }
+
+    @Test
+    void streamAllV4_1() {
+        streamAll(new MemberRepositoryV4_1(dataSource));
+    }
+
+    @Test
+    void streamAllV4_2() {
+        streamAll(new MemberRepositoryV4_2(dataSource));
+    }
+
+    @Test
+    void streamAllV5() {
+        streamAll(new MemberRepositoryV5(dataSource));
+    }
+
+    private void streamAll(MemberRepository repository) {
+        AtomicLong count = new AtomicLong();
+        AtomicLong money = new AtomicLong();
+
+        // 다른 테스트가 남긴 회원이 있을 수 있으므로 이 테스트 회원만 센다.
+        repository.streamAll(member -> {
+            if (member.getMemberId().startsWith("stream")) {
+                count.incrementAndGet();
+                money.addAndGet(member.getMoney());
+            }
+        }, FETCH_SIZE);
+
+        assertThat(count.get()).isEqualTo(SIZE);
+        assertThat(money.get()).isEqualTo((long) SIZE * (SIZE - 1) / 2);
+    }
+
+    private static String memberId(int i) {
+        return "stream" + i;
+    }
+}
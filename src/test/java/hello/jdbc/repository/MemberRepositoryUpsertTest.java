@@ -0,0 +1,122 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * saveIfAbsent / upsert - 키 중복 예외 없이 한 번에 저장
+ */
+class MemberRepositoryUpsertTest {
+
+    public static final String MEMBER_A = "upsertA";
+
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+    @AfterEach
+    void after() {
+        new MemberRepositoryV5(dataSource).delete(MEMBER_A);
+    }
+
+    @Test
+    void upsertV4_2() {
+        saveIfAbsentAndUpsert(new MemberRepositoryV4_2(dataSource));
+    }
+
+    @Test
+    void upsertV5() {
+        saveIfAbsentAndUpsert(new MemberRepositoryV5(dataSource));
+    }
+
+    @Test
+    void concurrentUpsertV4_2() throws Exception {
+        concurrentUpsert(MemberRepositoryV4_2::new);
+    }
+
+    @Test
+    void concurrentUpsertV5() throws Exception {
+        concurrentUpsert(MemberRepositoryV5::new);
+    }
+
+    @Test
+    void upsertDefault() {
+        saveIfAbsentAndUpsert(new MemberRepositoryV4_1(dataSource));
+    }
+
+    private void saveIfAbsentAndUpsert(MemberRepository repository) {
+        // 없으면 저장
+        assertThat(repository.saveIfAbsent(new Member(MEMBER_A, 10000))).isTrue();
+        // 있으면 그대로 (예외 없음)
+        assertThat(repository.saveIfAbsent(new Member(MEMBER_A, 20000))).isFalse();
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+
+        // 있으면 수정
+        assertThat(repository.upsert(new Member(MEMBER_A, 30000))).isFalse();
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(30000);
+
+        // 없으면 저장
+        repository.delete(MEMBER_A);
+        assertThat(repository.upsert(new Member(MEMBER_A, 40000))).isTrue();
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(40000);
+    }
+
+    /**
+     * 같은 새 id 를 여러 쓰레드가 동시에 upsert
+     * 둘 다 행이 없다고 보고 insert 하면 늦은 쪽이 키 중복이 난다. (드물게 생기므로 여러 번 반복)
+     * -> 예외 없이 하나만 새로 만들고(true) 나머지는 수정(false) 해야 한다.
+     * 커넥션을 새로 얻는 시간에 묶이지 않도록 쓰레드 수만큼 커넥션 풀을 채워둔다.
+     */
+    private void concurrentUpsert(Function<DataSource, MemberRepository> repositoryFactory) throws Exception {
+        int threads = 8;
+
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(URL);
+        pool.setUsername(USERNAME);
+        pool.setPassword(PASSWORD);
+        pool.setMaximumPoolSize(threads);
+        pool.setMinimumIdle(threads);
+        MemberRepository repository = repositoryFactory.apply(pool);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 1000; round++) {
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int money = t * 1000;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return repository.upsert(new Member(MEMBER_A, money));
+                    }));
+                }
+
+                int created = 0;
+                for (Future<Boolean> future : futures) {
+                    if (future.get()) {
+                        created++;
+                    }
+                }
+                assertThat(created).isEqualTo(1);
+
+                repository.delete(MEMBER_A);
+            }
+        } finally {
+            executor.shutdown();
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.connection.IsolatedSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.service.MemberServiceV4;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 전체 금액 보존 감시
+ */
+@Execution(ExecutionMode.CONCURRENT)
+@ResourceLock("T_MONEYAUDITORTEST")
+class MoneyAuditorTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_C = "memberC";
+
+    private DriverManagerDataSource dataSource;
+    private MoneyAuditor auditor;
+    private AuditingMemberRepository memberRepository;
+    private AuditingMemberRepositoryV3 memberRepositoryV3;
+    private TransactionTemplate txTemplate;
+
+    @BeforeEach
+    void before() {
+        dataSource = IsolatedSchema.dataSource(MoneyAuditorTest.class);
+        MemberRepositoryV5 repository = new MemberRepositoryV5(dataSource);
+        auditor = new MoneyAuditor(repository);
+        memberRepository = new AuditingMemberRepository(repository, auditor);
+        memberRepositoryV3 = new AuditingMemberRepositoryV3(dataSource, auditor);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_C, 10000));
+    }
+
+    @AfterEach
+    void after() {
+        auditor.close();
+        IsolatedSchema.truncate(dataSource);
+    }
+
+    @Test
+    @DisplayName("이체는 합계를 바꾸지 않는다")
+    void transfersKeepTotal() {
+        assertThat(auditor.check()).isEqualTo(0); // 기준 잡기
+        assertThat(auditor.getRunningTotal()).isEqualTo(30000);
+
+        // MemberServiceV4 의 @Transactional 대신 TransactionTemplate 으로 감싼다.
+        MemberServiceV4 memberService = new MemberServiceV4(memberRepository);
+        txTemplate.executeWithoutResult(status -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000));
+        txTemplate.executeWithoutResult(status -> memberService.accountTransfer(MEMBER_B, MEMBER_C, 500));
+
+        assertThat(auditor.check()).isEqualTo(0);
+        assertThat(auditor.getDriftCount()).isEqualTo(0);
+        assertThat(auditor.getRunningTotal()).isEqualTo(30000);
+    }
+
+    @Test
+    @DisplayName("롤백된 쓰기는 반영하지 않는다")
+    void rollbackIgnored() {
+        auditor.check();
+
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> {
+            memberRepository.withdraw(MEMBER_A, 1000);
+            memberRepository.save(new Member("memberD", 5000));
+            throw new IllegalStateException("이체중 예외 발생");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(auditor.getRunningTotal()).isEqualTo(30000);
+        assertThat(auditor.check()).isEqualTo(0);
+        assertThat(auditor.getDriftCount()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("읽고-고치고-쓰기 이체가 다른 이체를 덮어쓰면 drift 와 의심 이체를 보고한다")
+    void lostUpdateDetected() {
+        auditor.check();
+
+        TransactionTemplate requiresNew = new TransactionTemplate(txTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        // T1: A -> C 1000 (MemberServiceV3_x 처럼 조회한 값으로 update)
+        txTemplate.executeWithoutResult(status -> run(() -> {
+            Member fromMember = memberRepositoryV3.findById(MEMBER_A); // 10000
+
+            // T1 이 조회한 뒤 T2: A -> B 2000 이 먼저 커밋된다. (A = 8000)
+            requiresNew.executeWithoutResult(inner -> run(() -> {
+                Member a = memberRepositoryV3.findById(MEMBER_A);
+                Member b = memberRepositoryV3.findById(MEMBER_B);
+                memberRepositoryV3.update(MEMBER_A, a.getMoney() - 2000);
+                memberRepositoryV3.update(MEMBER_B, b.getMoney() + 2000);
+            }));
+
+            Member toMember = memberRepositoryV3.findById(MEMBER_C);
+            memberRepositoryV3.update(MEMBER_A, fromMember.getMoney() - 1000); // 9000 - T2 의 출금을 덮어씀
+            memberRepositoryV3.update(MEMBER_C, toMember.getMoney() + 1000);
+        }));
+
+        long drift = auditor.check();
+
+        assertThat(drift).isEqualTo(2000); // 출금 2000 이 사라져서 돈이 생김
+        assertThat(auditor.getDriftCount()).isEqualTo(1);
+        assertThat(auditor.getLastDriftTransfers()).hasSize(1);
+
+        MoneyAuditor.TransferRecord suspect = auditor.getLastDriftTransfers().get(0);
+        assertThat(suspect.getMemberIds()).containsExactly(MEMBER_A, MEMBER_C);
+        assertThat(suspect.getOverwritten()).containsOnlyKeys(MEMBER_A);
+
+        // 같은 drift 는 다시 보고하지 않는다.
+        assertThat(auditor.check()).isEqualTo(0);
+        assertThat(auditor.getDriftCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("변화량을 알 수 없는 쓰기는 drift 가 아니라 기준을 다시 잡는다")
+    void blindWriteRebaselines() throws SQLException {
+        auditor.check();
+
+        memberRepositoryV3.update(MEMBER_A, 0); // 트랜잭션 밖, 조회 없이 update
+
+        assertThat(auditor.getBlindWriteCount()).isEqualTo(1);
+        assertThat(auditor.check()).isEqualTo(0);
+        assertThat(auditor.getDriftCount()).isEqualTo(0);
+        assertThat(auditor.getRunningTotal()).isEqualTo(20000);
+    }
+
+    private static void run(SqlAction action) {
+        try {
+            action.run();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+}
@@ -0,0 +1,143 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.IsolatedSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 계좌이체 묶음 커밋
+ */
+@Slf4j
+@Execution(ExecutionMode.CONCURRENT) // 자기 스키마를 쓰므로 다른 테스트 클래스와 동시에 실행
+@ResourceLock("T_BATCHINGTRANSFERSERVICETEST") // 클래스 안의 테스트는 같은 id 를 쓰므로 차례로 실행
+class BatchingTransferServiceTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    DriverManagerDataSource dataSource;
+    MemberRepository memberRepository;
+    BatchingTransferService memberService;
+
+    @BeforeEach
+    void before() {
+        dataSource = IsolatedSchema.dataSource(BatchingTransferServiceTest.class);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        memberService = new BatchingTransferService(memberRepository, new DataSourceTransactionManager(dataSource),
+                16, Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void after() {
+        memberService.close();
+        IsolatedSchema.truncate(dataSource);
+    }
+
+    @Test
+    @DisplayName("한 묶음 안에서 실패한 이체만 롤백된다")
+    void accountTransfer() throws Exception {
+
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        // when - 정상 이체 사이에 실패하는 이체를 섞는다.
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(memberService.accountTransfer(MEMBER_A, MEMBER_B, 100));
+        }
+        CompletableFuture<Void> exFuture = memberService.accountTransfer(MEMBER_A, MEMBER_EX, 100); // 검증 실패
+        CompletableFuture<Void> notEnoughFuture = memberService.accountTransfer(MEMBER_B, MEMBER_A, 1_000_000); // 잔액 부족
+        for (int i = 0; i < 10; i++) {
+            futures.add(memberService.accountTransfer(MEMBER_B, MEMBER_A, 50));
+        }
+
+        // then
+        for (CompletableFuture<Void> future : futures) {
+            future.get();
+        }
+        assertThatThrownBy(exFuture::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(notEnoughFuture::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000 - 1000 + 500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000 + 1000 - 500);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("닫힌 뒤의 요청, 쓰기 쓰레드가 멈춘 뒤의 요청은 실패로 완료된다")
+    void closed() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // 쓰기 쓰레드가 Error 로 멈추는 경우
+        MemberRepository brokenRepository = new MemberRepositoryV5(dataSource) {
+            @Override
+            public boolean withdraw(String memberId, int amount) {
+                throw new AssertionError("broken");
+            }
+        };
+        BatchingTransferService brokenService = new BatchingTransferService(brokenRepository,
+                new DataSourceTransactionManager(dataSource), 16, Duration.ofMillis(50));
+        try {
+            CompletableFuture<Void> future = brokenService.accountTransfer(MEMBER_A, MEMBER_B, 100);
+            assertThatThrownBy(future::get)
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class)
+                    .hasRootCauseInstanceOf(AssertionError.class);
+
+            assertThatThrownBy(() -> brokenService.accountTransfer(MEMBER_A, MEMBER_B, 100).get())
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            brokenService.close();
+        }
+
+        // close 한 뒤
+        memberService.close();
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 100).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("묶음 크기, 대기 시간 검증")
+    void invalidArguments() {
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        assertThatThrownBy(() -> new BatchingTransferService(memberRepository, transactionManager, 0, Duration.ofMillis(50)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BatchingTransferService(memberRepository, transactionManager, Integer.MAX_VALUE, Duration.ofMillis(50)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BatchingTransferService(memberRepository, transactionManager, 16, Duration.ofMillis(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -1,30 +1,36 @@
 package hello.jdbc.service;
 
+import hello.jdbc.connection.IsolatedSchema;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepositoryV3;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.sql.SQLException;
 
-import static hello.jdbc.connection.ConnectionConst.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * 트랜잭션 - 트랜잭션 탬플릿 사용
  */
+@Execution(ExecutionMode.CONCURRENT) // 자기 스키마를 쓰므로 다른 테스트 클래스와 동시에 실행
+@ResourceLock("T_MEMBERSERVICEV3_2TEST") // 클래스 안의 테스트는 같은 id 를 쓰므로 차례로 실행
 class MemberServiceV3_2Test {
 
     public static final String MEMBER_A = "memberA";
     public static final String MEMBER_B = "memberB";
     public static final String MEMBER_EX = "ex";
 
+    private DriverManagerDataSource dataSource;
     private MemberRepositoryV3 memberRepository;
     private MemberServiceV3_2 memberService;
 
@@ -33,7 +39,7 @@ class MemberServiceV3_2Test {
     void before() {
 
         // DB 커넥션을 스프링이 제공하는 DriverManagerDataSource 사용
-        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        dataSource = IsolatedSchema.dataSource(MemberServiceV3_2Test.class);
 
         // 의존성 주입
         memberRepository = new MemberRepositoryV3(dataSource);
@@ -49,11 +55,9 @@ class MemberServiceV3_2Test {
 
         // 테스트시 db에 member가 생성되어 테스트를 다시 할때마다 db를 다시 초기화 해줘야 하는 번거로움이 있다.
         // 이를 AfterEach 메소드를 호출하여 각 테스트 메소드 실행 후 호출되도록 하여 자동으로 db 데이터를 지워준다.
+        // 이 클래스만 쓰는 스키마이므로 id 를 하나씩 지우지 않고 테이블을 비운다.
 
-        memberRepository.delete(MEMBER_A);
-        memberRepository.delete(MEMBER_B);
-        memberRepository.delete(MEMBER_EX);
-
+        IsolatedSchema.truncate(dataSource);
     }
 
     @Test
@@ -1,23 +1,25 @@
 package hello.jdbc.service;
 
+import hello.jdbc.connection.IsolatedSchema;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepositoryV3;
 import lombok.extern.slf4j.Slf4j;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
 
-import static hello.jdbc.connection.ConnectionConst.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -29,12 +31,17 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 // 이 어노테이션이 있으면 테스트시 스프링 부트를 통해 스프링 컨테이너를 생성한다.
 // 스프링 컨테이너 생성 시 의존관계를 주입해준다.
 @SpringBootTest
+@Execution(ExecutionMode.CONCURRENT) // 자기 스키마를 쓰므로 다른 테스트 클래스와 동시에 실행
+@ResourceLock("T_MEMBERSERVICEV3_3TEST") // 클래스 안의 테스트는 같은 id 를 쓰므로 차례로 실행
 class MemberServiceV3_3Test {
 
     public static final String MEMBER_A = "memberA";
     public static final String MEMBER_B = "memberB";
     public static final String MEMBER_EX = "ex";
 
+    @Autowired
+    private DataSource dataSource;
+
     @Autowired
     private MemberRepositoryV3 memberRepository;
 
@@ -49,7 +56,7 @@ class MemberServiceV3_3Test {
 
         @Bean // @Autowired 사용을 위해 빈 수동 등록
         DataSource dataSource() { // db 커넥션을 위해 db 연결정보를 가지고 데이터소스 생성
-            return new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+            return IsolatedSchema.dataSource(MemberServiceV3_3Test.class);
         }
 
         @Bean
@@ -76,10 +83,9 @@ class MemberServiceV3_3Test {
 
         // 테스트시 db에 member가 생성되어 테스트를 다시 할때마다 db를 다시 초기화 해줘야 하는 번거로움이 있다.
         // 이를 AfterEach 메소드를 호출하여 각 테스트 메소드 실행 후 호출되도록 하여 자동으로 db 데이터를 지워준다.
+        // 이 클래스만 쓰는 스키마이므로 id 를 하나씩 지우지 않고 테이블을 비운다.
 
-        memberRepository.delete(MEMBER_A);
-        memberRepository.delete(MEMBER_B);
-        memberRepository.delete(MEMBER_EX);
+        IsolatedSchema.truncate(dataSource);
     }
 
     @Test
@@ -1,5 +1,6 @@
 package hello.jdbc.service;
 
+import hello.jdbc.connection.IsolatedSchema;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepositoryV3;
 import lombok.extern.slf4j.Slf4j;
@@ -7,6 +8,9 @@ import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -15,6 +19,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
@@ -31,18 +37,29 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 // 이 어노테이션이 있으면 테스트시 스프링 부트를 통해 스프링 컨테이너를 생성한다.
 // 스프링 컨테이너 생성 시 의존관계를 주입해준다.
 @SpringBootTest
+@Execution(ExecutionMode.CONCURRENT) // 자기 스키마를 쓰므로 다른 테스트 클래스와 동시에 실행
+@ResourceLock("T_MEMBERSERVICEV3_4TEST") // 클래스 안의 테스트는 같은 id 를 쓰므로 차례로 실행
 class MemberServiceV3_4Test {
 
     public static final String MEMBER_A = "memberA";
     public static final String MEMBER_B = "memberB";
     public static final String MEMBER_EX = "ex";
 
+    @Autowired
+    private DataSource dataSource;
+
     @Autowired
     private MemberRepositoryV3 memberRepository;
 
     @Autowired
     private MemberServiceV3_3 memberService;
 
+    // 스프링 부트가 자동 등록하는 DataSource 가 이 클래스만 쓰는 스키마에 접속하도록 설정
+    @DynamicPropertySource
+    static void isolatedSchema(DynamicPropertyRegistry registry) {
+        IsolatedSchema.register(registry, MemberServiceV3_4Test.class);
+    }
+
     // 테스트 환경에서 필요한 빈들을 등록할 수 있도록 도와주는 어노테이션
     // 스프링 부트를 통해 스프링 컨테이너 생성 시 자동으로 주입된 의존관계 외에,
     // 내가 설정한 빈(수동 빈)을 추가로 사용하고 싶을 때
@@ -74,10 +91,9 @@ class MemberServiceV3_4Test {
 
         // 테스트시 db에 member가 생성되어 테스트를 다시 할때마다 db를 다시 초기화 해줘야 하는 번거로움이 있다.
         // 이를 AfterEach 메소드를 호출하여 각 테스트 메소드 실행 후 호출되도록 하여 자동으로 db 데이터를 지워준다.
+        // 이 클래스만 쓰는 스키마이므로 id 를 하나씩 지우지 않고 테이블을 비운다.
 
-        memberRepository.delete(MEMBER_A);
-        memberRepository.delete(MEMBER_B);
-        memberRepository.delete(MEMBER_EX);
+        IsolatedSchema.truncate(dataSource);
     }
 
     @Test
@@ -1,5 +1,6 @@
 package hello.jdbc.service;
 
+import hello.jdbc.connection.IsolatedSchema;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.*;
 import lombok.extern.slf4j.Slf4j;
@@ -7,14 +8,25 @@ import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -30,18 +42,29 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 // 이 어노테이션이 있으면 테스트시 스프링 부트를 통해 스프링 컨테이너를 생성한다.
 // 스프링 컨테이너 생성 시 의존관계를 주입해준다.
 @SpringBootTest
+@Execution(ExecutionMode.CONCURRENT) // 자기 스키마를 쓰므로 다른 테스트 클래스와 동시에 실행
+@ResourceLock("T_MEMBERSERVICEV4TEST") // 클래스 안의 테스트는 같은 id 를 쓰므로 차례로 실행
 class MemberServiceV4Test {
 
     public static final String MEMBER_A = "memberA";
     public static final String MEMBER_B = "memberB";
     public static final String MEMBER_EX = "ex";
 
+    @Autowired
+    private DataSource dataSource;
+
     @Autowired
     private MemberRepository memberRepository;
 
     @Autowired
     private MemberServiceV4 memberService;
 
+    // 스프링 부트가 자동 등록하는 DataSource 가 이 클래스만 쓰는 스키마에 접속하도록 설정
+    @DynamicPropertySource
+    static void isolatedSchema(DynamicPropertyRegistry registry) {
+        IsolatedSchema.register(registry, MemberServiceV4Test.class);
+    }
+
     // 테스트 환경에서 필요한 빈들을 등록할 수 있도록 도와주는 어노테이션
     // 스프링 부트를 통해 스프링 컨테이너 생성 시 자동으로 주입된 의존관계 외에,
     // 내가 설정한 빈(수동 빈)을 추가로 사용하고 싶을 때
@@ -77,10 +100,9 @@ class MemberServiceV4Test {
 
         // 테스트시 db에 member가 생성되어 테스트를 다시 할때마다 db를 다시 초기화 해줘야 하는 번거로움이 있다.
         // 이를 AfterEach 메소드를 호출하여 각 테스트 메소드 실행 후 호출되도록 하여 자동으로 db 데이터를 지워준다.
+        // 이 클래스만 쓰는 스키마이므로 id 를 하나씩 지우지 않고 테이블을 비운다.
 
-        memberRepository.delete(MEMBER_A);
-        memberRepository.delete(MEMBER_B);
-        memberRepository.delete(MEMBER_EX);
+        IsolatedSchema.truncate(dataSource);
     }
 
     @Test
@@ -141,4 +163,113 @@ class MemberServiceV4Test {
         // 예외가 발생한다. - memberA의 돈도 10000으로 수정해야 한다. 롤백되었기 때문
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("잔액 부족 - 아무것도 바뀌지 않는다")
+    void accountTransferNotEnoughMoney() {
+
+        // given
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("동시 이체 - 잃어버리는 이체가 없다")
+    void concurrentAccountTransfer() throws Exception {
+
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when - 8개 쓰레드가 동시에 100원씩 10번
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    memberService.accountTransfer(MEMBER_A, MEMBER_B, 100);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000 - 8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000 + 8000);
+    }
+
+    @Test
+    @DisplayName("A->B, B->A 동시 이체 - 락 순서 고정으로 데드락 없음, 처리량 유지")
+    void accountTransferLockOrdered() throws Exception {
+
+        // given
+        memberRepository.save(new Member(MEMBER_A, 100000));
+        memberRepository.save(new Member(MEMBER_B, 100000));
+
+        int threads = 64;
+        int transfers = 20;
+
+        // 기준 - 1개 쓰레드로 같은 횟수 (두 회원만 주고받으므로 동시에 해도 행 락 때문에 결국 한 건씩 처리된다)
+        long baselineTps = lockOrderedTps(1, threads * transfers);
+
+        // when - 64개 쓰레드가 동시에 A->B, B->A
+        long concurrentTps = lockOrderedTps(threads, transfers);
+        log.info("lock ordered tps - 1 thread={}, {} threads={}", baselineTps, threads, concurrentTps);
+
+        // then - 같은 횟수만큼 주고받았으므로 원래대로
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(100000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(100000);
+
+        // 락 대기(데드락 타임아웃, 커넥션 대기)로 무너지지 않고 1개 쓰레드 처리량의 절반 이상 유지
+        assertThat(concurrentTps).isGreaterThanOrEqualTo(baselineTps / 2);
+    }
+
+    /**
+     * threads 개 쓰레드가 transfers 번씩 A->B, B->A 를 번갈아 이체하고 초당 이체 수를 돌려준다.
+     * 실패(데드락, 락 타임아웃)가 한 건이라도 있으면 테스트 실패
+     */
+    private long lockOrderedTps(int threads, int transfers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < transfers; i++) {
+                    // 쓰레드마다, 이체마다 방향을 번갈아 -> 언제나 절반은 A->B, 절반은 B->A
+                    if ((offset + i) % 2 == 0) {
+                        memberService.accountTransferLockOrdered(MEMBER_A, MEMBER_B, 10);
+                    } else {
+                        memberService.accountTransferLockOrdered(MEMBER_B, MEMBER_A, 10);
+                    }
+                }
+            }));
+        }
+
+        int failed = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.info("transfer failed", e.getCause());
+                failed++;
+            }
+        }
+        executor.shutdown();
+        assertThat(failed).isZero();
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        return threads * transfers * 1000L / elapsedMillis;
+    }
+}
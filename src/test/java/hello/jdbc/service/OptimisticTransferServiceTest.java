@@ -0,0 +1,191 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.IsolatedSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 낙관적 락 계좌이체 - 버전 충돌 시 재시도
+ */
+@Execution(ExecutionMode.CONCURRENT)
+@ResourceLock("T_OPTIMISTICTRANSFERSERVICETEST")
+class OptimisticTransferServiceTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private DriverManagerDataSource dataSource;
+    private MemberRepository memberRepository;
+    private DataSourceTransactionManager transactionManager;
+    private OptimisticTransferService memberService;
+
+    @BeforeEach
+    void before() {
+        dataSource = IsolatedSchema.dataSource(OptimisticTransferServiceTest.class);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberService = new OptimisticTransferService(transactionManager, memberRepository);
+    }
+
+    @AfterEach
+    void after() {
+        IsolatedSchema.truncate(dataSource);
+    }
+
+    @Test
+    @DisplayName("정상 이체")
+    void accountTransfer() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+        Member findMemberA = memberRepository.findByIdWithVersion(MEMBER_A);
+        Member findMemberB = memberRepository.findByIdWithVersion(MEMBER_B);
+        assertThat(findMemberA.getMoney()).isEqualTo(8000);
+        assertThat(findMemberB.getMoney()).isEqualTo(12000);
+        assertThat(findMemberA.getVersion()).isEqualTo(1); // 수정할 때마다 버전이 오른다.
+        assertThat(memberService.getRetryCount()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("이체중 예외 발생 - 롤백")
+    void accountTransferEx() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        Member findMemberA = memberRepository.findByIdWithVersion(MEMBER_A);
+        assertThat(findMemberA.getMoney()).isEqualTo(10000);
+        assertThat(findMemberA.getVersion()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("자기 자신에게 이체 - 충돌 없이 그대로")
+    void selfTransfer() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+
+        memberService.accountTransfer(MEMBER_A, MEMBER_A, 2000);
+
+        Member findMemberA = memberRepository.findByIdWithVersion(MEMBER_A);
+        assertThat(findMemberA.getMoney()).isEqualTo(10000);
+        assertThat(memberService.getRetryCount()).isEqualTo(0);
+        assertThat(memberService.getGiveUpCount()).isEqualTo(0);
+
+        // 잔액 부족은 다른 이체와 똑같이 실패
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_A, 20000))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("조회한 뒤 다른 곳에서 수정했으면 버전 충돌")
+    void staleVersion() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        Member findMember = memberRepository.findByIdWithVersion(MEMBER_A);
+
+        memberRepository.addMoney(MEMBER_A, 500); // 버전 없는 수정도 버전을 올린다.
+
+        assertThatThrownBy(() -> memberRepository.update(MEMBER_A, findMember.getMoney() - 1000, findMember.getVersion()))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(memberRepository.findByIdWithVersion(MEMBER_A).getMoney()).isEqualTo(10500);
+    }
+
+    @Test
+    @DisplayName("예전 리포지토리(V3)의 읽고-고치고-쓰기도 버전을 올린다")
+    void staleVersionFromOldRepository() throws SQLException {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        Member findMember = memberRepository.findByIdWithVersion(MEMBER_A);
+
+        new MemberRepositoryV3(dataSource).update(MEMBER_A, 5000);
+
+        assertThatThrownBy(() -> memberRepository.update(MEMBER_A, findMember.getMoney() - 1000, findMember.getVersion()))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(memberRepository.findByIdWithVersion(MEMBER_A).getMoney()).isEqualTo(5000);
+    }
+
+    @Test
+    @DisplayName("동시에 양방향 이체 - 충돌하면 재시도해서 돈을 잃어버리지 않는다")
+    void concurrentTransfers() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 100000));
+        memberRepository.save(new Member(MEMBER_B, 100000));
+        OptimisticTransferService service = new OptimisticTransferService(transactionManager, memberRepository,
+                100, Duration.ofNanos(50_000), Duration.ofMillis(5));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                boolean aToB = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 25; n++) {
+                        if (aToB) {
+                            service.accountTransfer(MEMBER_A, MEMBER_B, 10);
+                        } else {
+                            service.accountTransfer(MEMBER_B, MEMBER_A, 30);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // A -> B : 4 쓰레드 x 25 x 10, B -> A : 4 쓰레드 x 25 x 30
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(100000 - 1000 + 3000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(100000 + 1000 - 3000);
+        assertThat(service.getGiveUpCount()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("maxAttempts 번 모두 충돌하면 포기")
+    void giveUp() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // 버전 수정이 항상 충돌하는 리포지토리
+        MemberRepository alwaysConflict = new MemberRepositoryV5(dataSource) {
+            @Override
+            public void update(String memberId, int money, long version) {
+                throw new OptimisticLockingFailureException("conflict memberId = " + memberId);
+            }
+        };
+        OptimisticTransferService service = new OptimisticTransferService(transactionManager, alwaysConflict,
+                3, Duration.ofNanos(1000), Duration.ofNanos(1000));
+
+        assertThatThrownBy(() -> service.accountTransfer(MEMBER_A, MEMBER_B, 2000))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(service.getRetryCount()).isEqualTo(2);
+        assertThat(service.getGiveUpCount()).isEqualTo(1);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+}